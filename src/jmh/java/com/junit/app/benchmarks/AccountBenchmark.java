@@ -0,0 +1,65 @@
+package com.junit.app.benchmarks;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccountBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("10.25");
+    private static final long AMOUNT_MINOR_UNITS = Money.toMinorUnits(AMOUNT);
+
+    private Account origin;
+    private Account destination;
+    private long originMinorUnits;
+    private long destinationMinorUnits;
+
+    @Setup
+    public void setUp() {
+        origin = new Account(1L, "Kevin", new BigDecimal("1000000000.00"));
+        destination = new Account(2L, "Brando", new BigDecimal("1000000000.00"));
+        originMinorUnits = Money.toMinorUnits(origin.getBalance());
+        destinationMinorUnits = Money.toMinorUnits(destination.getBalance());
+    }
+
+    @Benchmark
+    public Account debitCredit() {
+        origin.debit(AMOUNT);
+        destination.credit(AMOUNT);
+        // Swap roles so balances stay bounded across iterations.
+        Account account = origin;
+        origin = destination;
+        destination = account;
+        return destination;
+    }
+
+    @Benchmark
+    public long debitCreditMinorUnits() {
+        if (originMinorUnits < AMOUNT_MINOR_UNITS) {
+            throw new IllegalStateException();
+        }
+        originMinorUnits -= AMOUNT_MINOR_UNITS;
+        destinationMinorUnits = Math.addExact(destinationMinorUnits, AMOUNT_MINOR_UNITS);
+        long balance = originMinorUnits;
+        originMinorUnits = destinationMinorUnits;
+        destinationMinorUnits = balance;
+        return destinationMinorUnits;
+    }
+}
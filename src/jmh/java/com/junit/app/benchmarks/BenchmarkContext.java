@@ -0,0 +1,86 @@
+package com.junit.app.benchmarks;
+
+import com.junit.app.JunitAppApplication;
+import com.junit.app.models.Account;
+import com.junit.app.repositories.AccountRepository;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+final class BenchmarkContext {
+    private BenchmarkContext() {
+    }
+
+    // Boots the application against its own in-memory H2 database, without a web server or SQL logging.
+    static ConfigurableApplicationContext start(String... properties) {
+        return builder(properties).run();
+    }
+
+    // Same as start, but every JDBC statement is delayed by the given latency to stand in for a remote database.
+    static ConfigurableApplicationContext start(long jdbcLatencyMillis, String... properties) {
+        return builder(properties)
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+                    @Override
+                    public Object postProcessAfterInitialization(Object bean, String beanName) {
+                        if (bean instanceof DataSource) {
+                            return new DelegatingDataSource((DataSource) bean) {
+                                @Override
+                                public Connection getConnection() throws SQLException {
+                                    return delayed(super.getConnection(), jdbcLatencyMillis);
+                                }
+                            };
+                        }
+                        return bean;
+                    }
+                }))
+                .run();
+    }
+
+    private static SpringApplicationBuilder builder(String... properties) {
+        List<String> defaults = new ArrayList<>(List.of(
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                "logging.level.org.hibernate.SQL=OFF",
+                "app.transfers.rate-limit.enabled=false"));
+        defaults.addAll(List.of(properties));
+        return new SpringApplicationBuilder(JunitAppApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(defaults.toArray(new String[0]));
+    }
+
+    private static Connection delayed(Connection connection, long latencyMillis) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("prepare")) {
+                        Thread.sleep(latencyMillis);
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    static List<Long> createAccounts(ConfigurableApplicationContext context, int count, BigDecimal balance) {
+        AccountRepository accountRepository = context.getBean(AccountRepository.class);
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account(null, "Bench" + i, balance));
+        }
+        List<Long> ids = new ArrayList<>(count);
+        accountRepository.saveAll(accounts).forEach(account -> ids.add(account.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,70 @@
+package com.junit.app.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.junit.app.models.Account;
+import com.junit.app.models.TransactionDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"100", "10000"})
+    public int accountCount;
+
+    private ObjectMapper objectMapper;
+    private List<Account> accounts;
+    private Map<String, Object> transferResponse;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        accounts = new ArrayList<>(accountCount);
+        for (long i = 1; i <= accountCount; i++) {
+            accounts.add(new Account(i, "Account" + i, new BigDecimal("1000.00")));
+        }
+
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setOriginAccountId(1L);
+        transactionDTO.setDestinationAccountId(2L);
+        transactionDTO.setAmount(new BigDecimal("100"));
+        transactionDTO.setBankId(1L);
+        transferResponse = new HashMap<>();
+        transferResponse.put("date", LocalDate.now().toString());
+        transferResponse.put("status", "OK");
+        transferResponse.put("message", "Transfer done successfully");
+        transferResponse.put("transaction", transactionDTO);
+    }
+
+    @Benchmark
+    public byte[] accountList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(accounts);
+    }
+
+    @Benchmark
+    public byte[] transferResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transferResponse);
+    }
+}
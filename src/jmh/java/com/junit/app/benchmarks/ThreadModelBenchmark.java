@@ -0,0 +1,94 @@
+package com.junit.app.benchmarks;
+
+import com.junit.app.services.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a Tomcat-sized platform thread pool with virtual threads for transfers when every JDBC
+ * statement pays {@code jdbcLatencyMs}. Only the platform model runs by default; the virtual one needs
+ * a Java 21 runtime and is selected with {@code -p threadModel=platform,virtual}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ThreadModelBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    // Tomcat's default server.tomcat.threads.max.
+    private static final int PLATFORM_THREADS = 200;
+    private static final int REQUESTS = 1000;
+
+    @Param({"platform"})
+    public String threadModel;
+    @Param({"5"})
+    public long jdbcLatencyMs;
+    @Param({"50"})
+    public int poolSize;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private ExecutorService executor;
+    private List<Long> ids;
+
+    @Setup
+    public void setUp() {
+        boolean virtual = "virtual".equals(threadModel);
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21, running on " + Runtime.version());
+        }
+        context = BenchmarkContext.start(jdbcLatencyMs,
+                "app.threads.virtual=" + virtual,
+                "spring.datasource.hikari.maximum-pool-size=" + poolSize);
+        accountService = context.getBean(AccountService.class);
+        executor = virtual
+                ? context.getBean("virtualThreadExecutor", ExecutorService.class)
+                : Executors.newFixedThreadPool(PLATFORM_THREADS);
+        ids = BenchmarkContext.createAccounts(context, 1000, new BigDecimal("1000000000"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void transfers() throws Exception {
+        List<Future<?>> futures = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            futures.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                accountService.transfer(ids.get(random.nextInt(ids.size())), ids.get(random.nextInt(ids.size())),
+                        AMOUNT, 1L);
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.junit.app.benchmarks;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
+import com.junit.app.repositories.AccountRepository;
+import com.junit.app.services.AccountService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"100", "10000"})
+    public int accountCount;
+
+    private ConfigurableApplicationContext context;
+    private AccountService accountService;
+    private AccountRepository accountRepository;
+    private List<Long> ids;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start();
+        accountService = context.getBean(AccountService.class);
+        accountRepository = context.getBean(AccountRepository.class);
+        ids = BenchmarkContext.createAccounts(context, accountCount, new BigDecimal("1000000000"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        accountService.transfer(randomId(random), randomId(random), AMOUNT, 1L);
+    }
+
+    @Benchmark
+    public List<TransferResult> transferAll() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<TransactionDTO> transactions = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            TransactionDTO transactionDTO = new TransactionDTO();
+            transactionDTO.setOriginAccountId(randomId(random));
+            transactionDTO.setDestinationAccountId(randomId(random));
+            transactionDTO.setAmount(AMOUNT);
+            transactionDTO.setBankId(1L);
+            transactions.add(transactionDTO);
+        }
+        return accountService.transferAll(transactions);
+    }
+
+    @Benchmark
+    public Optional<Account> findByName() {
+        return accountRepository.findByName("Bench" + ThreadLocalRandom.current().nextInt(accountCount));
+    }
+
+    private Long randomId(ThreadLocalRandom random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,82 @@
+package com.junit.app;
+
+import lombok.Data;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Routes read-only transactions to the replicas listed under {@code app.datasource.replicas[n]}
+ * ({@code url}, {@code username}, {@code password}, {@code weight}); without any replica the
+ * primary DataSource is left alone.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replicas[0].url")
+public class ReadReplicaConfig {
+
+    @Bean
+    public static BeanPostProcessor replicaRoutingPostProcessor(
+            Environment environment,
+            @Value("${app.datasource.replica-ejection-ms:30000}") long ejectionMillis) {
+        return new RoutingPostProcessor(environment, ejectionMillis);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(
+            @Value("${app.datasource.read-your-writes-ms:2000}") long stalenessMillis) {
+        return new ReadYourWritesFilter(stalenessMillis);
+    }
+
+    // Ordered, so routing wraps the pool before any BoundedDataSource wraps the result.
+    private static final class RoutingPostProcessor implements BeanPostProcessor, Ordered {
+        private final Environment environment;
+        private final long ejectionMillis;
+
+        private RoutingPostProcessor(Environment environment, long ejectionMillis) {
+            this.environment = environment;
+            this.ejectionMillis = ejectionMillis;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource) || bean instanceof ReplicaRoutingDataSource) {
+                return bean;
+            }
+            List<Replica> replicas = Binder.get(environment)
+                    .bind("app.datasource.replicas", Bindable.listOf(Replica.class))
+                    .orElseThrow(IllegalStateException::new);
+            return new ReplicaRoutingDataSource((DataSource) bean,
+                    replicas.stream().map(Replica::dataSource).collect(Collectors.toList()),
+                    replicas.stream().map(Replica::getWeight).collect(Collectors.toList()),
+                    ejectionMillis);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    @Data
+    public static class Replica {
+        private String url;
+        private String username;
+        private String password;
+        private int weight = 1;
+
+        private DataSource dataSource() {
+            return DataSourceBuilder.create().url(url).username(username).password(password).build();
+        }
+    }
+}
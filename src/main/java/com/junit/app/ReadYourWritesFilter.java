@@ -0,0 +1,87 @@
+package com.junit.app;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Gives a client read-your-writes on top of replica routing. When a request opens a write
+ * transaction the response carries a cookie fencing that client to the primary for the staleness
+ * bound; until it expires, that client's read-only transactions skip the replicas.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    static final String COOKIE = "primary-until";
+
+    private static final ThreadLocal<Fence> CURRENT = new ThreadLocal<>();
+
+    private final long stalenessMillis;
+
+    public ReadYourWritesFilter(long stalenessMillis) {
+        this.stalenessMillis = stalenessMillis;
+    }
+
+    static boolean primaryRequired() {
+        Fence fence = CURRENT.get();
+        return fence != null && fence.primaryRequired;
+    }
+
+    // Called when this thread takes a primary connection for a write transaction.
+    static void wrote() {
+        Fence fence = CURRENT.get();
+        if (fence == null || fence.written || fence.response.isCommitted()) {
+            return;
+        }
+        fence.written = true;
+        fence.primaryRequired = true;
+        Cookie cookie = new Cookie(COOKIE, String.valueOf(System.currentTimeMillis() + fence.stalenessMillis));
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (fence.stalenessMillis + 999) / 1000));
+        fence.response.addCookie(cookie);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CURRENT.set(new Fence(response, stalenessMillis, fencedUntil(request) > System.currentTimeMillis()));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CURRENT.remove();
+        }
+    }
+
+    private static long fencedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) {
+                    try {
+                        return Long.parseLong(cookie.getValue());
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static final class Fence {
+        private final HttpServletResponse response;
+        private final long stalenessMillis;
+        private boolean primaryRequired;
+        private boolean written;
+
+        private Fence(HttpServletResponse response, long stalenessMillis, boolean primaryRequired) {
+            this.response = response;
+            this.stalenessMillis = stalenessMillis;
+            this.primaryRequired = primaryRequired;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.junit.app;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sends read-only transactions to replicas and everything else to the primary. Replicas are picked
+ * by smooth weighted round-robin; one that fails to hand out a connection is ejected for a while and
+ * the read falls over to the next replica, then to the primary. Connections are fetched lazily, so the
+ * routing decision is made after the transaction manager has marked the transaction read-only.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final long ejectionMillis;
+    private final int[] schedule;
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicLongArray ejectedUntil;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, List<Integer> weights,
+                                    long ejectionMillis) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.ejectionMillis = ejectionMillis;
+        this.schedule = schedule(weights);
+        this.ejectedUntil = new AtomicLongArray(replicas.size());
+        setTargetDataSource(new Router());
+        afterPropertiesSet();
+    }
+
+    // Replicas currently taking reads; a replica is back in rotation once its ejection has expired.
+    public List<Integer> healthyReplicas() {
+        List<Integer> healthy = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < replicas.size(); i++) {
+            if (ejectedUntil.get(i) <= now) {
+                healthy.add(i);
+            }
+        }
+        return healthy;
+    }
+
+    // Whether this thread has been handed a replica connection since the last call; resets the flag.
+    public static boolean takeReplicaRead() {
+        boolean read = REPLICA_READ.get() != null;
+        REPLICA_READ.remove();
+        return read;
+    }
+
+    @Override
+    public void close() {
+        close(primary);
+        replicas.forEach(ReplicaRoutingDataSource::close);
+    }
+
+    private Connection replicaConnection() throws SQLException {
+        long now = System.currentTimeMillis();
+        long start = next.getAndIncrement();
+        for (int i = 0; i < schedule.length; i++) {
+            int replica = schedule[(int) Math.floorMod(start + i, (long) schedule.length)];
+            if (ejectedUntil.get(replica) > now) {
+                continue;
+            }
+            try {
+                Connection connection = replicas.get(replica).getConnection();
+                REPLICA_READ.set(Boolean.TRUE);
+                return connection;
+            } catch (SQLException e) {
+                ejectedUntil.set(replica, now + ejectionMillis);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    // Smooth weighted round-robin, precomputed once so picking a replica is a single increment.
+    private static int[] schedule(List<Integer> weights) {
+        int total = weights.stream().mapToInt(Integer::intValue).sum();
+        int[] schedule = new int[total];
+        int[] current = new int[weights.size()];
+        for (int slot = 0; slot < total; slot++) {
+            int best = 0;
+            for (int i = 0; i < current.length; i++) {
+                current[i] += weights.get(i);
+                if (current[i] > current[best]) {
+                    best = i;
+                }
+            }
+            current[best] -= total;
+            schedule[slot] = best;
+        }
+        return schedule;
+    }
+
+    private static void close(DataSource dataSource) {
+        if (dataSource instanceof Closeable) {
+            try {
+                ((Closeable) dataSource).close();
+            } catch (Exception ignored) {
+                // Shutting down; nothing left to do with a pool that will not close.
+            }
+        }
+    }
+
+    private class Router extends AbstractDataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+                return primary.getConnection();
+            }
+            if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+                ReadYourWritesFilter.wrote();
+                return primary.getConnection();
+            }
+            if (ReadYourWritesFilter.primaryRequired() || replicas.isEmpty()) {
+                return primary.getConnection();
+            }
+            return replicaConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.junit.app;
+
+import com.junit.app.services.Shards;
+import lombok.Data;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaExport;
+import org.hibernate.tool.schema.TargetType;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Spreads accounts over the primary DataSource (shard 0) and the databases listed under
+ * {@code app.datasource.shards[n]} ({@code url}, {@code username}, {@code password}). Each shard
+ * keeps its own accounts sequence, stepped so that it only hands out the id blocks its shard owns.
+ * When Hibernate creates the schema, it creates it, seed data included, on every shard; seed
+ * accounts are then kept only on the shard owning their id. Replicas, if any, serve shard 0.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.shards[0].url")
+public class ShardConfig {
+
+    @Bean
+    public static BeanPostProcessor shardRoutingPostProcessor(Environment environment) {
+        return new RoutingPostProcessor(environment);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer shardHibernateCustomizer(Environment environment, DataSource dataSource) {
+        int count = Shards.count(environment);
+        return properties -> {
+            properties.put(ShardSequenceGenerator.SHARD_COUNT, count);
+            // The database sequences step by a multiple of the mapped increment once they are aligned.
+            properties.put(AvailableSettings.SEQUENCE_INCREMENT_SIZE_MISMATCH_STRATEGY, "none");
+            properties.put(EntityManagerFactoryBuilderImpl.INTEGRATOR_PROVIDER,
+                    (IntegratorProvider) () -> List.of(new SchemaIntegrator(count, new JdbcTemplate(dataSource))));
+        };
+    }
+
+    // Runs once the schema and seed data exist and before anything can insert an account.
+    @Bean
+    public SmartInitializingSingleton shardSequenceAlignment(Shards shards, DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return () -> {
+            int count = shards.count();
+            for (int shard = 0; shard < count; shard++) {
+                int target = shard;
+                Shards.on(shard, () -> {
+                    Long max = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from accounts", Long.class);
+                    long next = max == 0 ? 0 : Math.floorDiv(max - 1, Shards.BLOCK_SIZE) + 1;
+                    long block = next + Math.floorMod(target - next, (long) count);
+                    jdbcTemplate.execute("alter sequence accounts_seq restart with " + (1 + block * Shards.BLOCK_SIZE)
+                            + " increment by " + (long) Shards.BLOCK_SIZE * count);
+                    return null;
+                });
+            }
+        };
+    }
+
+    // Ordered after replica routing, so replicas wrap the primary and the primary becomes shard 0.
+    private static final class RoutingPostProcessor implements BeanPostProcessor, Ordered {
+        private final Environment environment;
+
+        private RoutingPostProcessor(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource) || bean instanceof ShardRoutingDataSource) {
+                return bean;
+            }
+            List<Shard> shards = Binder.get(environment)
+                    .bind("app.datasource.shards", Bindable.listOf(Shard.class))
+                    .orElseThrow(IllegalStateException::new);
+            List<DataSource> dataSources = new ArrayList<>();
+            dataSources.add((DataSource) bean);
+            shards.forEach(shard -> dataSources.add(shard.dataSource()));
+            return new ShardRoutingDataSource(dataSources);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE + 1;
+        }
+    }
+
+    private static final class SchemaIntegrator implements Integrator {
+        private static final Set<String> CREATING = Set.of("create", "create-drop");
+
+        private final int count;
+        private final JdbcTemplate jdbcTemplate;
+
+        private SchemaIntegrator(int count, JdbcTemplate jdbcTemplate) {
+            this.count = count;
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+                              SessionFactoryServiceRegistry serviceRegistry) {
+            Object action = sessionFactory.getProperties().get(AvailableSettings.HBM2DDL_AUTO);
+            if (action == null || !CREATING.contains(action.toString())) {
+                return;
+            }
+            // Hibernate itself creates shard 0 once the session factory is built.
+            for (int shard = 1; shard < count; shard++) {
+                int target = shard;
+                Shards.on(shard, () -> {
+                    new SchemaExport().create(EnumSet.of(TargetType.DATABASE), metadata);
+                    jdbcTemplate.update("delete from accounts where mod((id - 1) / ?, ?) <> ?",
+                            Shards.BLOCK_SIZE, count, target);
+                    return null;
+                });
+            }
+        }
+
+        @Override
+        public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+        }
+    }
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+
+        private DataSource dataSource() {
+            return DataSourceBuilder.create().url(url).username(username).password(password).build();
+        }
+    }
+}
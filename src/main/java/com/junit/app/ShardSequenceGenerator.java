@@ -0,0 +1,61 @@
+package com.junit.app;
+
+import com.junit.app.services.Shards;
+import org.hibernate.boot.model.relational.Database;
+import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A sequence generator with one optimizer per shard. Every shard has its own copy of the sequence,
+ * so a pooled-lo block fetched on one shard must never be handed out on another; the delegate is
+ * picked by the shard bound to the inserting thread. With a single shard it is a plain
+ * {@link SequenceStyleGenerator}.
+ */
+public class ShardSequenceGenerator implements IdentifierGenerator {
+    public static final String SHARD_COUNT = "app.shards.count";
+
+    private final List<SequenceStyleGenerator> delegates = new ArrayList<>();
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        int count = ConfigurationHelper.getInt(SHARD_COUNT,
+                serviceRegistry.getService(ConfigurationService.class).getSettings(), 1);
+        for (int shard = 0; shard < count; shard++) {
+            SequenceStyleGenerator delegate = new SequenceStyleGenerator();
+            delegate.configure(type, params, serviceRegistry);
+            delegates.add(delegate);
+        }
+    }
+
+    // The delegates resolve the same sequence definition; each shard's schema holds one copy of it.
+    @Override
+    public void registerExportables(Database database) {
+        delegates.forEach(delegate -> delegate.registerExportables(database));
+    }
+
+    @Override
+    public void initialize(SqlStringGenerationContext context) {
+        delegates.forEach(delegate -> delegate.initialize(context));
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return delegates.get(Shards.current()).generate(session, object);
+    }
+
+    @Override
+    public boolean supportsJdbcBatchInserts() {
+        return true;
+    }
+}
@@ -1,66 +1,169 @@
 package com.junit.app.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.junit.app.models.Account;
+import com.junit.app.models.AccountBalance;
+import com.junit.app.models.ImportResult;
+import com.junit.app.models.QueuedTransfer;
+import com.junit.app.models.ScheduledTransfer;
 import com.junit.app.models.TransactionDTO;
+import com.junit.app.services.AccountImportService;
 import com.junit.app.services.AccountService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDate;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AccountController {
     @Autowired
     private AccountService accountService;
+    @Autowired
+    private AccountRequests accountRequests;
+    @Autowired
+    private AccountImportService accountImportService;
+    @Autowired
+    private ObjectMapper objectMapper;
 
+    // The ETag is taken before the read, so a change racing with it only costs the client one more fetch.
     @GetMapping
+    public ResponseEntity<List<Account>> list(@RequestParam(required = false) Long afterId,
+                                              @RequestParam(required = false) Integer limit,
+                                              WebRequest request) {
+        if (request.checkNotModified(accountRequests.accountsETag())) {
+            return null;
+        }
+        if (afterId == null && limit == null) {
+            return ResponseEntity.ok(accountService.findAll());
+        }
+        return ResponseEntity.ok(accountService.findPage(afterId, AccountRequests.pageSize(limit)));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        StreamingResponseBody body = outputStream -> accountService.streamAll(account -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(account));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    @GetMapping("/search")
     @ResponseStatus(HttpStatus.OK)
-    public List<Account> list() {
-        return accountService.findAll();
+    public List<Account> search(@RequestParam(required = false) String prefix,
+                                @RequestParam(required = false) String name,
+                                @RequestParam(required = false) Integer limit) {
+        return accountRequests.search(prefix, name, limit);
     }
 
-    @GetMapping("/{id}")
+    @GetMapping("/top")
     @ResponseStatus(HttpStatus.OK)
-    public ResponseEntity<Account> detail(@PathVariable Long id) {
-        Account account = null;
-        try {
-            account = accountService.findById(id);
-        } catch (NoSuchElementException e) {
-            return ResponseEntity.notFound().build();
+    public List<AccountBalance> top(@RequestParam(defaultValue = "10") int n) {
+        return accountRequests.top(n);
+    }
+
+    @GetMapping("/{id}/balance")
+    public ResponseEntity<Map<String, Object>> balanceAt(@PathVariable Long id, @RequestParam Instant at) {
+        return accountRequests.balanceAt(id, at);
+    }
+
+    @GetMapping(value = "/balances", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> balancesAt(@RequestParam Instant at) {
+        StreamingResponseBody body = outputStream -> accountService.streamBalancesAt(at, balance -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(balance));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // A conditional request is answered from the version alone, without loading or serializing the account.
+    @GetMapping("/{id}")
+    public ResponseEntity<Account> detail(@PathVariable Long id, WebRequest request) {
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+            Optional<Long> version = accountService.findVersion(id);
+            if (version.isPresent() && request.checkNotModified(AccountRequests.etag(version.get()))) {
+                return null;
+            }
         }
-        return ResponseEntity.ok(account);
+        return accountRequests.detail(id);
     }
 
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public Account create(@RequestBody Account account) {
-        return accountService.save(account);
+    public ResponseEntity<Account> create(@RequestBody Account account,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return accountRequests.save(account, ifMatch);
+    }
+
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    public ImportResult importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                       InputStream body) throws IOException {
+        AccountImportService.Format format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? AccountImportService.Format.NDJSON : AccountImportService.Format.CSV;
+        return accountImportService.importAccounts(body, format);
     }
 
     @PostMapping("/transfer")
-    public ResponseEntity<?> transfer(@RequestBody TransactionDTO transactionDTO) {
-        accountService.transfer(transactionDTO.getOriginAccountId(), transactionDTO.getDestinationAccountId(),
-                transactionDTO.getAmount(), transactionDTO.getBankId());
-        Map<String, Object> response = new HashMap<>();
-        response.put("date", LocalDate.now().toString());
-        response.put("status", "OK");
-        response.put("message", "Transfer done successfully");
-        response.put("transaction", transactionDTO);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<?> transfer(@RequestBody TransactionDTO transactionDTO,
+                                      @RequestParam(defaultValue = "false") boolean async) {
+        return accountRequests.transfer(transactionDTO, async);
+    }
+
+    @GetMapping("/transfers/{id}")
+    public ResponseEntity<QueuedTransfer> transferStatus(@PathVariable String id) {
+        return accountRequests.transferStatus(id);
+    }
+
+    @PostMapping("/transfers/scheduled")
+    public ResponseEntity<?> scheduleTransfer(@RequestBody ScheduledTransfer request) {
+        return accountRequests.scheduleTransfer(request);
+    }
+
+    @GetMapping("/transfers/scheduled/{id}")
+    public ResponseEntity<ScheduledTransfer> scheduledTransfer(@PathVariable Long id) {
+        return accountRequests.scheduledTransfer(id);
+    }
+
+    @DeleteMapping("/transfers/scheduled/{id}")
+    public ResponseEntity<ScheduledTransfer> cancelScheduledTransfer(@PathVariable Long id) {
+        return accountRequests.cancelScheduledTransfer(id);
+    }
+
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<?> transferBatch(@RequestBody List<TransactionDTO> transactions) {
+        return ResponseEntity.ok(accountRequests.transferBatch(transactions));
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,253 @@
+package com.junit.app.controllers;
+
+import com.junit.app.exceptions.TransferOverloaded;
+import com.junit.app.exceptions.TransferQueueFull;
+import com.junit.app.exceptions.TransferRateLimited;
+import com.junit.app.models.Account;
+import com.junit.app.models.AccountBalance;
+import com.junit.app.models.Money;
+import com.junit.app.models.QueuedTransfer;
+import com.junit.app.models.ScheduledTransfer;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
+import com.junit.app.services.AccountService;
+import com.junit.app.services.ScheduledTransfers;
+import com.junit.app.services.TransferAdmission;
+import com.junit.app.services.TransferQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * The request handling shared by {@link AccountController} and {@link ReactiveAccountController}:
+ * everything here blocks, and the reactive controller only moves it off the event loop.
+ */
+@Component
+class AccountRequests {
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransferQueue transferQueue;
+    @Autowired
+    private TransferAdmission transferAdmission;
+    @Autowired
+    private ScheduledTransfers scheduledTransfers;
+
+    static int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    String accountsETag() {
+        return etag(accountService.accountsVersion());
+    }
+
+    List<Account> search(String prefix, String name, Integer limit) {
+        if (name != null) {
+            return accountService.findByName(name).map(List::of).orElseGet(List::of);
+        }
+        return accountService.searchByName(prefix == null ? "" : prefix, pageSize(limit));
+    }
+
+    List<AccountBalance> top(int n) {
+        return accountService.topBalances(Math.max(1, Math.min(n, MAX_PAGE_SIZE)));
+    }
+
+    // A checkpoint lookup plus a replay of the entries after it; 404 when the account had no history by then.
+    ResponseEntity<Map<String, Object>> balanceAt(Long id, Instant at) {
+        return accountService.balanceAt(id, at)
+                .map(balance -> ResponseEntity.ok(balanceResponse(id, at, balance)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    ResponseEntity<Account> detail(Long id) {
+        Account account;
+        try {
+            account = accountService.findById(id);
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().eTag(etag(account.getVersion())).body(account);
+    }
+
+    // An update is checked against the version in If-Match when one is sent and otherwise replaces the stored account.
+    ResponseEntity<Account> save(Account account, String ifMatch) {
+        boolean conditional = ifMatch != null && !"*".equals(ifMatch.trim());
+        if (conditional) {
+            Optional<Long> version = version(ifMatch);
+            if (version.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
+            account.setVersion(version.get());
+        }
+        Account saved;
+        try {
+            saved = conditional || account.getId() == null ? accountService.save(account) : accountService.overwrite(account);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(conditional ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(etag(saved.getVersion())).body(saved);
+    }
+
+    ResponseEntity<Map<String, Object>> transfer(TransactionDTO transactionDTO, boolean async) {
+        try {
+            Money.toTransferAmount(transactionDTO.getAmount());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(transferResponse("ERROR", e.getMessage(), transactionDTO));
+        }
+        if (async) {
+            return queueTransfer(transactionDTO);
+        }
+        try {
+            accountService.transfer(transactionDTO.getOriginAccountId(), transactionDTO.getDestinationAccountId(),
+                    transactionDTO.getAmount(), transactionDTO.getBankId());
+        } catch (TransferRateLimited e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(transferResponse("ERROR", e.getMessage(), transactionDTO));
+        } catch (TransferOverloaded e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(transferResponse("ERROR", e.getMessage(), transactionDTO));
+        }
+        return ResponseEntity.ok(transferResponse("OK", "Transfer done successfully", transactionDTO));
+    }
+
+    ResponseEntity<QueuedTransfer> transferStatus(String id) {
+        return transferQueue.find(id).map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    ResponseEntity<Object> scheduleTransfer(ScheduledTransfer request) {
+        ScheduledTransfer scheduled;
+        try {
+            scheduled = scheduledTransfers.schedule(request.toTransaction(), request.getDueAt());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(transferResponse("ERROR", e.getMessage(), request.toTransaction()));
+        }
+        return ResponseEntity.created(URI.create("/api/accounts/transfers/scheduled/" + scheduled.getId())).body(scheduled);
+    }
+
+    ResponseEntity<ScheduledTransfer> scheduledTransfer(Long id) {
+        return scheduledTransfers.find(id).map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // 409 with the transfer when it has already run or been cancelled.
+    ResponseEntity<ScheduledTransfer> cancelScheduledTransfer(Long id) {
+        if (scheduledTransfers.cancel(id)) {
+            return ResponseEntity.noContent().build();
+        }
+        return scheduledTransfers.find(id).map(ResponseEntity.status(HttpStatus.CONFLICT)::body)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // Each transfer is admitted on its own before the batch runs; a rejected one gets a RATE_LIMITED result in its place.
+    Map<String, Object> transferBatch(List<TransactionDTO> transactions) {
+        List<TransferResult> results = new ArrayList<>(transactions.size());
+        List<TransactionDTO> admitted = admit(transactions, results);
+        if (!admitted.isEmpty()) {
+            merge(results, accountService.transferAll(admitted));
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("date", LocalDate.now().toString());
+        response.put("status", "OK");
+        response.put("message", "Batch transfer processed");
+        response.put("results", results);
+        return response;
+    }
+
+    static String etag(Object version) {
+        return "\"" + version + "\"";
+    }
+
+    // Acknowledges the transfer once it is queued; clients poll its status until a worker commits it.
+    private ResponseEntity<Map<String, Object>> queueTransfer(TransactionDTO transactionDTO) {
+        QueuedTransfer transfer;
+        try {
+            transferAdmission.admit(transactionDTO.getOriginAccountId(), transactionDTO.getBankId());
+        } catch (TransferRateLimited e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(transferResponse("ERROR", e.getMessage(), transactionDTO));
+        }
+        try {
+            transfer = transferQueue.submit(transactionDTO);
+        } catch (TransferQueueFull e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(transferResponse("ERROR", e.getMessage(), transactionDTO));
+        }
+        Map<String, Object> response = transferResponse(transfer.getStatus(), "Transfer queued", transactionDTO);
+        response.put("id", transfer.getId());
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/accounts/transfers/" + transfer.getId()))
+                .body(response);
+    }
+
+    // Leaves a null in results for every admitted transfer, to be filled in by merge(), and returns those transfers.
+    private List<TransactionDTO> admit(List<TransactionDTO> transactions, List<TransferResult> results) {
+        List<TransactionDTO> admitted = new ArrayList<>(transactions.size());
+        for (TransactionDTO transaction : transactions) {
+            try {
+                transferAdmission.admit(transaction.getOriginAccountId(), transaction.getBankId());
+                admitted.add(transaction);
+                results.add(null);
+            } catch (TransferRateLimited e) {
+                results.add(new TransferResult(transaction, TransferResult.RATE_LIMITED, e.getMessage(),
+                        e.getRetryAfterSeconds()));
+            }
+        }
+        return admitted;
+    }
+
+    private static void merge(List<TransferResult> results, List<TransferResult> applied) {
+        Iterator<TransferResult> iterator = applied.iterator();
+        results.replaceAll(result -> result == null ? iterator.next() : result);
+    }
+
+    // The version in a strong ETag as etag() writes it; a weak or foreign tag never matches.
+    private static Optional<Long> version(String etag) {
+        String value = etag.trim();
+        if (value.length() < 3 || value.charAt(0) != '"' || value.charAt(value.length() - 1) != '"') {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(value.substring(1, value.length() - 1)));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static Map<String, Object> transferResponse(String status, String message, TransactionDTO transactionDTO) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("date", LocalDate.now().toString());
+        response.put("status", status);
+        response.put("message", message);
+        response.put("transaction", transactionDTO);
+        return response;
+    }
+
+    private static Map<String, Object> balanceResponse(Long id, Instant at, BigDecimal balance) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", id);
+        response.put("at", at.toString());
+        response.put("balance", balance);
+        return response;
+    }
+}
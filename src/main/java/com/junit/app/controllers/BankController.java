@@ -0,0 +1,25 @@
+package com.junit.app.controllers;
+
+import com.junit.app.models.BankStats;
+import com.junit.app.services.BankTransferStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/banks")
+public class BankController {
+    @Autowired
+    private BankTransferStats bankTransferStats;
+
+    // Served from memory only; a bank with no recent transfers, or no such bank, reports empty windows.
+    @GetMapping("/{id}/stats")
+    @ResponseStatus(HttpStatus.OK)
+    public BankStats stats(@PathVariable Long id) {
+        return bankTransferStats.stats(id);
+    }
+}
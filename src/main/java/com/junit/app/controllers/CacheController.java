@@ -0,0 +1,23 @@
+package com.junit.app.controllers;
+
+import com.junit.app.models.CacheStats;
+import com.junit.app.services.AccountCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+    @Autowired
+    private AccountCache accountCache;
+
+    @GetMapping("/accounts")
+    @ResponseStatus(HttpStatus.OK)
+    public CacheStats accounts() {
+        return accountCache.stats();
+    }
+}
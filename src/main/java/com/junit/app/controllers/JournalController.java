@@ -0,0 +1,29 @@
+package com.junit.app.controllers;
+
+import com.junit.app.models.JournalEntry;
+import com.junit.app.services.JournalService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/journal")
+public class JournalController {
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    @Autowired
+    private JournalService journalService;
+
+    @GetMapping
+    @ResponseStatus(HttpStatus.OK)
+    public List<JournalEntry> list(@RequestParam(defaultValue = "1") long from,
+                                  @RequestParam(defaultValue = "100") int limit) {
+        return journalService.read(from, Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+    }
+}
@@ -0,0 +1,178 @@
+package com.junit.app.controllers;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.AccountBalance;
+import com.junit.app.models.QueuedTransfer;
+import com.junit.app.models.ScheduledTransfer;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.services.AccountService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Reactive variant of {@link AccountController}, active when the app runs with
+ * {@code spring.main.web-application-type=reactive}. Persistence is still JPA, so every service call
+ * is moved off the event loop onto the bounded elastic pool; the request handling itself is
+ * {@link AccountRequests}, shared with the servlet controller.
+ */
+@RestController
+@RequestMapping("/api/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAccountController {
+    private final Scheduler scheduler = Schedulers.boundedElastic();
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRequests accountRequests;
+
+    // Without afterId or limit every account is streamed, its pages read by keyset only when the subscriber asks for
+    // more, so a slow client holds no connection between pages; with either, one page is answered as the servlet list does.
+    // The ETag (a query on every shard, so read off the event loop) is attached to the entity, so a matching
+    // If-None-Match is answered with 304 before the accounts are subscribed.
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<Account>>> list(@RequestParam(required = false) Long afterId,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    ServerWebExchange exchange) {
+        Flux<Account> accounts;
+        if (afterId != null || limit != null) {
+            accounts = blocking(() -> accountService.findPage(afterId, AccountRequests.pageSize(limit)))
+                    .flatMapIterable(page -> page);
+        } else {
+            accounts = Flux.<List<Account>, Long>generate(() -> Long.MIN_VALUE, (lastId, sink) -> {
+                        List<Account> page = accountService.findPage(lastId, AccountRequests.DEFAULT_PAGE_SIZE);
+                        if (page.isEmpty()) {
+                            sink.complete();
+                            return lastId;
+                        }
+                        sink.next(page);
+                        return page.get(page.size() - 1).getId();
+                    })
+                    .subscribeOn(scheduler)
+                    .flatMapIterable(page -> page, 1);
+        }
+        if (exchange.getRequest().getHeaders().getAccept().contains(MediaType.APPLICATION_NDJSON)) {
+            return Mono.just(ResponseEntity.ok().body(accounts));
+        }
+        return blocking(accountRequests::accountsETag).map(etag -> ResponseEntity.ok().eTag(etag).body(accounts));
+    }
+
+    @GetMapping("/search")
+    public Flux<Account> search(@RequestParam(required = false) String prefix,
+                                @RequestParam(required = false) String name,
+                                @RequestParam(required = false) Integer limit) {
+        return blocking(() -> accountRequests.search(prefix, name, limit)).flatMapIterable(accounts -> accounts);
+    }
+
+    // Answered from memory, so it runs on the event loop rather than the blocking scheduler.
+    @GetMapping("/top")
+    public Flux<AccountBalance> top(@RequestParam(defaultValue = "10") int n) {
+        return Flux.fromIterable(accountRequests.top(n));
+    }
+
+    @GetMapping("/{id}/balance")
+    public Mono<ResponseEntity<Map<String, Object>>> balanceAt(@PathVariable Long id, @RequestParam Instant at) {
+        return blocking(() -> accountRequests.balanceAt(id, at));
+    }
+
+    // A ledger range is read only when the subscriber asks for more, so a slow client holds one range at a time.
+    @GetMapping(value = "/balances", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<AccountBalance> balancesAt(@RequestParam Instant at) {
+        return Flux.<List<AccountBalance>, Iterator<List<AccountBalance>>>generate(() -> accountService.balancePagesAt(at), (pages, sink) -> {
+                    if (pages.hasNext()) {
+                        sink.next(pages.next());
+                    } else {
+                        sink.complete();
+                    }
+                    return pages;
+                })
+                .subscribeOn(scheduler)
+                .flatMapIterable(page -> page, 1);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Account>> detail(@PathVariable Long id, ServerWebExchange exchange) {
+        Mono<Boolean> notModified = exchange.getRequest().getHeaders().getIfNoneMatch().isEmpty()
+                ? Mono.just(false)
+                : blocking(() -> accountService.findVersion(id))
+                        .map(version -> version.isPresent() && exchange.checkNotModified(AccountRequests.etag(version.get())));
+        return notModified.flatMap(unchanged -> unchanged
+                ? Mono.<ResponseEntity<Account>>empty()
+                : blocking(() -> accountRequests.detail(id)));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Account>> create(@RequestBody Account account,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return blocking(() -> accountRequests.save(account, ifMatch));
+    }
+
+    @PostMapping("/transfer")
+    public Mono<ResponseEntity<Map<String, Object>>> transfer(@RequestBody TransactionDTO transactionDTO,
+                                                              @RequestParam(defaultValue = "false") boolean async) {
+        return blocking(() -> accountRequests.transfer(transactionDTO, async));
+    }
+
+    @GetMapping("/transfers/{id}")
+    public Mono<ResponseEntity<QueuedTransfer>> transferStatus(@PathVariable String id) {
+        return Mono.just(accountRequests.transferStatus(id));
+    }
+
+    @PostMapping("/transfers/scheduled")
+    public Mono<ResponseEntity<Object>> scheduleTransfer(@RequestBody ScheduledTransfer request) {
+        return blocking(() -> accountRequests.scheduleTransfer(request));
+    }
+
+    @GetMapping("/transfers/scheduled/{id}")
+    public Mono<ResponseEntity<ScheduledTransfer>> scheduledTransfer(@PathVariable Long id) {
+        return blocking(() -> accountRequests.scheduledTransfer(id));
+    }
+
+    @DeleteMapping("/transfers/scheduled/{id}")
+    public Mono<ResponseEntity<ScheduledTransfer>> cancelScheduledTransfer(@PathVariable Long id) {
+        return blocking(() -> accountRequests.cancelScheduledTransfer(id));
+    }
+
+    @PostMapping("/transfer/batch")
+    public Mono<Map<String, Object>> transferBatch(@RequestBody List<TransactionDTO> transactions) {
+        return blocking(() -> accountRequests.transferBatch(transactions));
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> delete(@PathVariable Long id) {
+        return blocking(() -> {
+            accountService.deleteById(id);
+            return null;
+        }).then();
+    }
+
+    private <T> Mono<T> blocking(Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(scheduler);
+    }
+}
@@ -0,0 +1,7 @@
+package com.junit.app.exceptions;
+
+public class TransferOverloaded extends RuntimeException {
+    public TransferOverloaded(String message) {
+        super(message);
+    }
+}
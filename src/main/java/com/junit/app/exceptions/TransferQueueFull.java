@@ -0,0 +1,7 @@
+package com.junit.app.exceptions;
+
+public class TransferQueueFull extends RuntimeException {
+    public TransferQueueFull(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.junit.app.exceptions;
+
+public class TransferRateLimited extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TransferRateLimited(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,35 +1,55 @@
 package com.junit.app.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.junit.app.exceptions.NotEnoughMoney;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.math.BigDecimal;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "accounts")
+@Table(name = "accounts", indexes = @Index(name = "idx_accounts_name", columnList = "name"))
 public class Account {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "accounts_seq")
+    @GenericGenerator(name = "accounts_seq", strategy = "com.junit.app.ShardSequenceGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "accounts_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Long id;
     private String name;
     private BigDecimal balance;
+    // Bumped on every committed change, including the bulk balance updates; exposed to clients only as the ETag.
+    @Version
+    @JsonIgnore
+    @EqualsAndHashCode.Exclude
+    private long version;
+
+    public Account(Long id, String name, BigDecimal balance) {
+        this.id = id;
+        this.name = name;
+        this.balance = balance;
+    }
 
     public void debit(BigDecimal amount) {
-        BigDecimal newBalance = balance.subtract(amount);
-        if(newBalance.compareTo(BigDecimal.ZERO) < 0) {
+        if (balance.compareTo(amount) < 0) {
             throw new NotEnoughMoney("Not enough money for the account");
         }
-        this.balance = newBalance;
+        this.balance = balance.subtract(amount);
     }
 
     public void credit(BigDecimal amount) {
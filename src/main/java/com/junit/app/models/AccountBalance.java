@@ -0,0 +1,16 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountBalance {
+    private Long id;
+    private String name;
+    private BigDecimal balance;
+}
@@ -0,0 +1,41 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * An account's balance, in minor units, as of a checkpoint cut: every ledger entry stamped at or
+ * before {@code at} is included. All checkpoints written by one run share the same cut.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "balance_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "at"}),
+        indexes = @Index(name = "idx_balance_checkpoints_at", columnList = "at"))
+public class BalanceCheckpoint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "balance_checkpoints_seq")
+    @GenericGenerator(name = "balance_checkpoints_seq", strategy = "com.junit.app.ShardSequenceGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "balance_checkpoints_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
+    private Long id;
+    @Column(name = "account_id")
+    private Long accountId;
+    private long at;
+    private long balance;
+}
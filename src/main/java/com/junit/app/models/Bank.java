@@ -3,6 +3,8 @@ package com.junit.app.models;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -18,7 +20,11 @@ import javax.persistence.Table;
 @Table(name = "banks")
 public class Bank {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "banks_seq")
+    @GenericGenerator(name = "banks_seq", strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = "sequence_name", value = "banks_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
     private Long id;
     private String name;
     @Column(name = "total_transfers")
@@ -0,0 +1,15 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BankStats {
+    private Long bankId;
+    private Map<String, WindowStats> windows;
+}
@@ -0,0 +1,16 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImportResult {
+    private long rows;
+    private long rejected;
+    private String firstError;
+    private long millis;
+    private long rowsPerSecond;
+}
@@ -0,0 +1,20 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class JournalEntry {
+    private long sequence;
+    private long timestamp;
+    private String type;
+    private Long accountId;
+    private Long destinationAccountId;
+    private Long bankId;
+    private BigDecimal amount;
+}
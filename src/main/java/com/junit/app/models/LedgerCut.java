@@ -0,0 +1,23 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A checkpoint cut that every account range of its run has committed; written last, so checkpoints
+ * at a cut with no row here belong to a run that failed part-way and are not relied on in bulk.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "ledger_cuts")
+public class LedgerCut {
+    @Id
+    private long at;
+}
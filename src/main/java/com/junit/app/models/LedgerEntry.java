@@ -0,0 +1,40 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * A committed change to one account's balance, in minor units, stamped with the time it committed.
+ * The balance at any time is the sum of the entries up to it; checkpoints keep that sum short.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "ledger_entries", indexes = {
+        @Index(name = "idx_ledger_entries_account_at", columnList = "account_id, at"),
+        @Index(name = "idx_ledger_entries_at", columnList = "at")})
+public class LedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entries_seq")
+    @GenericGenerator(name = "ledger_entries_seq", strategy = "com.junit.app.ShardSequenceGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "ledger_entries_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
+    private Long id;
+    @Column(name = "account_id")
+    private Long accountId;
+    private long at;
+    private long amount;
+}
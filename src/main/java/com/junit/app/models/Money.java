@@ -0,0 +1,40 @@
+package com.junit.app.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point money as a long count of minor units (cents). BigDecimal is only used at the
+ * JSON and persistence boundaries; arithmetic on the transfer path works on longs.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    public static long toMinorUnits(BigDecimal value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        if (value.scale() > SCALE && value.stripTrailingZeros().scale() > SCALE) {
+            throw new IllegalArgumentException("Amount must have at most " + SCALE + " decimal places");
+        }
+        try {
+            return value.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount is out of range");
+        }
+    }
+
+    public static long toTransferAmount(BigDecimal amount) {
+        long minorUnits = toMinorUnits(amount);
+        if (minorUnits <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        return minorUnits;
+    }
+
+    public static BigDecimal fromMinorUnits(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+}
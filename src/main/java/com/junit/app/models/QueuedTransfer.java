@@ -0,0 +1,15 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class QueuedTransfer {
+    private String id;
+    private TransactionDTO transaction;
+    private String status;
+    private String message;
+}
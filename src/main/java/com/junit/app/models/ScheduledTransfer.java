@@ -0,0 +1,73 @@
+package com.junit.app.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * A transfer to be applied at {@code dueAt}. It is PENDING until it is claimed (RUNNING) and then
+ * DONE or FAILED with the transfer's message; a PENDING one can be CANCELLED. A claim records the
+ * instance holding it and until when, so a claim left behind by a dead instance can be told apart
+ * from one still being worked on.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "scheduled_transfers", indexes = @Index(name = "idx_scheduled_transfers_due", columnList = "state, due_at"))
+public class ScheduledTransfer {
+    public enum State { PENDING, RUNNING, DONE, FAILED, CANCELLED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "scheduled_transfers_seq")
+    @GenericGenerator(name = "scheduled_transfers_seq", strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = "sequence_name", value = "scheduled_transfers_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo")})
+    private Long id;
+    @Column(name = "origin_account_id")
+    private Long originAccountId;
+    @Column(name = "destination_account_id")
+    private Long destinationAccountId;
+    @Column(name = "bank_id")
+    private Long bankId;
+    private BigDecimal amount;
+    @Column(name = "due_at")
+    private Instant dueAt;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private State state;
+    @Column(name = "executed_at")
+    private Instant executedAt;
+    private String message;
+    @JsonIgnore
+    @Column(name = "claimed_by", length = 36)
+    private String claimedBy;
+    @JsonIgnore
+    @Column(name = "claimed_until")
+    private Instant claimedUntil;
+
+    public TransactionDTO toTransaction() {
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setOriginAccountId(originAccountId);
+        transaction.setDestinationAccountId(destinationAccountId);
+        transaction.setAmount(amount);
+        transaction.setBankId(bankId);
+        return transaction;
+    }
+}
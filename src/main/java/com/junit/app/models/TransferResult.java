@@ -0,0 +1,26 @@
+package com.junit.app.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferResult {
+    public static final String RATE_LIMITED = "RATE_LIMITED";
+    // The batch failed part way across shards: the transfer may or may not have been applied.
+    public static final String INTERRUPTED = "INTERRUPTED";
+
+    private TransactionDTO transaction;
+    private String status;
+    private String message;
+    // Set only on RATE_LIMITED results: when the origin or bank will admit another transfer.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long retryAfterSeconds;
+
+    public TransferResult(TransactionDTO transaction, String status, String message) {
+        this(transaction, status, message, null);
+    }
+}
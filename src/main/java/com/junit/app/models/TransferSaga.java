@@ -0,0 +1,47 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.math.BigDecimal;
+
+/**
+ * One cross-shard transfer. The origin shard holds the saga log row, PENDING until the transfer
+ * completes or is compensated; the destination shard holds a row with the same id recording whether
+ * the credit was applied or refused, so each step can be retried without being applied twice.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "transfer_sagas", indexes = @Index(name = "idx_transfer_sagas_state", columnList = "state, created_at"))
+public class TransferSaga {
+    public enum State { PENDING, COMPLETED, COMPENSATED, CREDITED, REFUSED }
+
+    @Id
+    private String id;
+    @Column(name = "origin_account_id")
+    private Long originAccountId;
+    @Column(name = "destination_account_id")
+    private Long destinationAccountId;
+    @Column(name = "bank_id")
+    private Long bankId;
+    private BigDecimal amount;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private State state;
+    @Column(name = "created_at")
+    private long createdAt;
+
+    public TransferSaga withState(State state) {
+        return new TransferSaga(id, originAccountId, destinationAccountId, bankId, amount, state, createdAt);
+    }
+}
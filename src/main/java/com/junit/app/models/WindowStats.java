@@ -0,0 +1,18 @@
+package com.junit.app.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class WindowStats {
+    private long count;
+    private BigDecimal amount;
+    private BigDecimal min;
+    private BigDecimal max;
+    private double perSecond;
+}
@@ -1,16 +1,59 @@
 package com.junit.app.repositories;
 
 import com.junit.app.models.Account;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface AccountRepository extends JpaRepository<Account, Long> {
     @Query("select a from Account a where a.name=?1")
     Optional<Account> findByName(String name);
 
+    @Query("select a from Account a where a.id > ?1 order by a.id")
+    List<Account> findPageAfter(Long afterId, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select a from Account a order by a.id")
+    Stream<Account> streamAll();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select a.id, a.name from Account a")
+    Stream<Object[]> streamNames();
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select a.id, a.balance from Account a")
+    Stream<Object[]> streamBalances();
+
+    @Query("select a.balance from Account a where a.id=?1")
+    Optional<BigDecimal> findBalanceById(Long id);
+
+    @Query("select a.version from Account a where a.id=?1")
+    Optional<Long> findVersionById(Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "2000"))
+    @Query("select a from Account a where a.id in ?1 order by a.id")
+    List<Account> findAllByIdForUpdate(Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a set a.balance = a.balance - ?2, a.version = a.version + 1 where a.id=?1 and a.balance >= ?2")
+    int debit(Long id, BigDecimal amount);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Account a set a.balance = a.balance + ?2, a.version = a.version + 1 where a.id=?1")
+    int credit(Long id, BigDecimal amount);
+
 //    List<Account> findAll();
 //    Account findById(Long id);
 //    void save(Account account);
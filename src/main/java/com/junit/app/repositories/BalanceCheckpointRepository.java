@@ -0,0 +1,17 @@
+package com.junit.app.repositories;
+
+import com.junit.app.models.BalanceCheckpoint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface BalanceCheckpointRepository extends JpaRepository<BalanceCheckpoint, Long> {
+    @Query("select c from BalanceCheckpoint c where c.accountId=?1 and c.at <= ?2 order by c.at desc")
+    List<BalanceCheckpoint> findLatest(Long accountId, long until, Pageable pageable);
+
+    @Query("select c.accountId, c.balance from BalanceCheckpoint c where c.accountId between ?1 and ?2 and c.at = "
+            + "(select max(l.at) from BalanceCheckpoint l where l.accountId = c.accountId and l.at <= ?3)")
+    List<Object[]> findLatestByAccountBetween(Long fromId, Long toId, long until);
+}
@@ -0,0 +1,17 @@
+package com.junit.app.repositories;
+
+import com.junit.app.models.ChangeCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface ChangeCounterRepository extends JpaRepository<ChangeCounter, Long> {
+    @Query("select coalesce(sum(c.changes), 0) from ChangeCounter c where c.tableName=?1")
+    long sumByTableName(String tableName);
+
+    boolean existsByTableNameAndStripe(String tableName, int stripe);
+
+    @Modifying
+    @Query("update ChangeCounter c set c.changes = c.changes + ?3 where c.tableName=?1 and c.stripe=?2")
+    int increment(String tableName, int stripe, long delta);
+}
@@ -0,0 +1,10 @@
+package com.junit.app.repositories;
+
+import com.junit.app.models.LedgerCut;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+public interface LedgerCutRepository extends JpaRepository<LedgerCut, Long> {
+    @Query("select max(c.at) from LedgerCut c where c.at <= ?1")
+    Long findLastCut(long until);
+}
@@ -0,0 +1,39 @@
+package com.junit.app.repositories;
+
+import com.junit.app.models.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    // Sum and count of one account's entries in (after, until]; the count tells an empty range from a zero sum.
+    @Query("select coalesce(sum(e.amount), 0), count(e) from LedgerEntry e where e.accountId=?1 and e.at > ?2 and e.at <= ?3")
+    List<Object[]> sumBetween(Long accountId, long after, long until);
+
+    @Query("select e.accountId, sum(e.amount) from LedgerEntry e "
+            + "where e.accountId between ?1 and ?2 and e.at > ?3 and e.at <= ?4 group by e.accountId")
+    List<Object[]> sumByAccountBetween(Long fromId, Long toId, long after, long until);
+
+    // A range scan of the at index over one checkpoint interval.
+    @Query("select min(e.accountId), max(e.accountId) from LedgerEntry e where e.at > ?1 and e.at <= ?2")
+    List<Object[]> accountBoundsBetween(long after, long until);
+
+    // Both ends of the (account_id, at) index, so no entries are read.
+    @Query("select min(e.accountId), max(e.accountId) from LedgerEntry e")
+    List<Object[]> accountBounds();
+
+    @Modifying(flushAutomatically = true)
+    @Query("update LedgerEntry e set e.at=?2 where e.id in ?1")
+    int stamp(Collection<Long> ids, long at);
+
+    // Accounts with no history yet, such as seed data or rows that predate the ledger.
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "500"))
+    @Query("select a.id, a.balance from Account a where not exists (select e.id from LedgerEntry e where e.accountId = a.id)")
+    Stream<Object[]> streamUnrecordedBalances();
+}
@@ -0,0 +1,36 @@
+package com.junit.app.repositories;
+
+import com.junit.app.models.ScheduledTransfer;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+public interface ScheduledTransferRepository extends JpaRepository<ScheduledTransfer, Long> {
+    // Id and due time of the pending transfers due in [from, until), in due order: one range scan of the (state, due_at) index.
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("select t.id, t.dueAt from ScheduledTransfer t where t.state=?1 and t.dueAt >= ?2 and t.dueAt < ?3 order by t.dueAt, t.id")
+    Stream<Object[]> streamDue(ScheduledTransfer.State state, Instant from, Instant until);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ScheduledTransfer t set t.state=?3 where t.id=?1 and t.state=?2")
+    int transition(Long id, ScheduledTransfer.State from, ScheduledTransfer.State to);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ScheduledTransfer t set t.state='RUNNING', t.claimedBy=?2, t.claimedUntil=?3 where t.id=?1 and t.state='PENDING'")
+    int claim(Long id, String owner, Instant until);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ScheduledTransfer t set t.state=?2, t.executedAt=?3, t.message=?4 where t.id=?1 and t.state='RUNNING'")
+    int finish(Long id, ScheduledTransfer.State state, Instant executedAt, String message);
+
+    // Claims whose lease ran out before they finished; one without a lease predates leases and is treated as expired.
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ScheduledTransfer t set t.state='FAILED', t.executedAt=?1, t.message=?2 "
+            + "where t.state='RUNNING' and (t.claimedUntil is null or t.claimedUntil < ?1)")
+    int failExpired(Instant executedAt, String message);
+}
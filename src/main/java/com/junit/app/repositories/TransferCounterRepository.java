@@ -0,0 +1,15 @@
+package com.junit.app.repositories;
+
+import com.junit.app.models.TransferCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+public interface TransferCounterRepository extends JpaRepository<TransferCounter, Long> {
+    @Query("select coalesce(sum(c.transfers), 0) from TransferCounter c where c.bankId=?1")
+    long sumByBankId(Long bankId);
+
+    @Modifying
+    @Query("update TransferCounter c set c.transfers = c.transfers + ?3 where c.bankId=?1 and c.stripe=?2")
+    int increment(Long bankId, int stripe, long delta);
+}
@@ -0,0 +1,17 @@
+package com.junit.app.repositories;
+
+import com.junit.app.models.TransferSaga;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+
+public interface TransferSagaRepository extends JpaRepository<TransferSaga, String> {
+    @Query("select s from TransferSaga s where s.state=?1 and s.createdAt < ?2 order by s.createdAt")
+    List<TransferSaga> findByStateBefore(TransferSaga.State state, long createdBefore);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update TransferSaga s set s.state=?3 where s.id=?1 and s.state=?2")
+    int transition(String id, TransferSaga.State from, TransferSaga.State to);
+}
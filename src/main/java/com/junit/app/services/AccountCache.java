@@ -0,0 +1,162 @@
+package com.junit.app.services;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.CacheStats;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded read-through cache of accounts by id. Entries expire after a TTL and each segment
+ * evicts its least recently used entry once full. Callers get copies, never the cached instance.
+ */
+@Component
+public class AccountCache implements MeterBinder {
+    private static final int SEGMENTS = 16;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public AccountCache(@Value("${app.accounts.cache.max-size:10000}") int maxSize,
+                        @Value("${app.accounts.cache.ttl-ms:60000}") long ttlMillis) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        int segmentCount = Math.max(1, Math.min(SEGMENTS, this.maxSize));
+        int segmentCapacity = (this.maxSize + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+    }
+
+    public Account get(Long id) {
+        if (maxSize > 0) {
+            Segment segment = segmentFor(id);
+            synchronized (segment) {
+                Entry entry = segment.get(id);
+                if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                    hits.increment();
+                    return copy(entry.account);
+                }
+                if (entry != null) {
+                    segment.remove(id);
+                    expirations.increment();
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    // Taken before loading from the database; put() drops the value if the id was invalidated meanwhile.
+    public long token(Long id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            return segment.generation;
+        }
+    }
+
+    public void put(Account account, long token) {
+        if (maxSize == 0 || account.getId() == null) {
+            return;
+        }
+        Entry entry = new Entry(copy(account), System.nanoTime() + ttlNanos);
+        Segment segment = segmentFor(account.getId());
+        synchronized (segment) {
+            if (segment.generation == token) {
+                segment.put(account.getId(), entry);
+            }
+        }
+    }
+
+    public void invalidate(Long id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            segment.generation++;
+            segment.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.generation++;
+                segment.clear();
+            }
+        }
+    }
+
+    public CacheStats stats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new CacheStats(size, maxSize, hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", "accounts", "result", "hit").register(registry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tags("cache", "accounts", "result", "miss").register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tags("cache", "accounts").register(registry);
+        FunctionCounter.builder("cache.expirations", expirations, LongAdder::sum)
+                .tags("cache", "accounts").register(registry);
+        Gauge.builder("cache.size", this, cache -> cache.stats().getSize())
+                .tags("cache", "accounts").register(registry);
+    }
+
+    private Segment segmentFor(Long id) {
+        return segments[Math.floorMod(id.hashCode(), segments.length)];
+    }
+
+    private static Account copy(Account account) {
+        return new Account(account.getId(), account.getName(), account.getBalance(), account.getVersion());
+    }
+
+    private static final class Entry {
+        private final Account account;
+        private final long expiresAt;
+
+        private Entry(Account account, long expiresAt) {
+            this.account = account;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<Long, Entry> {
+        private final int capacity;
+        private long generation;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
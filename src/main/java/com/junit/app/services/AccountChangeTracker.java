@@ -0,0 +1,72 @@
+package com.junit.app.services;
+
+import com.junit.app.models.ChangeCounter;
+import com.junit.app.repositories.ChangeCounterRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Table-level version of the accounts: the sum of the change counters kept in the database of every
+ * shard plus this instance's changes not yet written there. Changes are counted in memory once they
+ * commit and flushed every {@code app.accounts.change-counter.flush-interval-ms}, into a random one
+ * of several counter stripes, so a transfer never writes a shared counter row. This instance sees
+ * its own changes in the version at once, other instances within a flush interval.
+ */
+@Component
+public class AccountChangeTracker {
+    private static final String ACCOUNTS = "accounts";
+
+    private final ChangeCounterRepository changeCounterRepository;
+    private final Shards shards;
+    private final int stripes;
+    private final BufferedCounters<String> counters = new BufferedCounters<>();
+
+    public AccountChangeTracker(ChangeCounterRepository changeCounterRepository, Shards shards,
+                                @Value("${app.accounts.change-counter.stripes:8}") int stripes) {
+        this.changeCounterRepository = changeCounterRepository;
+        this.shards = shards;
+        this.stripes = stripes;
+    }
+
+    // Creates the stripes missing on each shard, so a change never has to insert a counter row. Runs on the
+    // calling thread: a gather worker could block on the bean factory this is still being created under.
+    @PostConstruct
+    public void init() {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            shards.inTransaction(shard, () -> {
+                for (int stripe = 0; stripe < stripes; stripe++) {
+                    if (!changeCounterRepository.existsByTableNameAndStripe(ACCOUNTS, stripe)) {
+                        changeCounterRepository.save(new ChangeCounter(null, ACCOUNTS, stripe, 0));
+                    }
+                }
+                return null;
+            });
+        }
+    }
+
+    // Counted when the caller's transaction commits, so a rolled-back change does not move the version.
+    public void changed() {
+        counters.add(ACCOUNTS, 1);
+    }
+
+    public String version() {
+        return Long.toString(counters.read(ACCOUNTS, table -> shards.gather(shard -> changeCounterRepository.sumByTableName(table)).stream()
+                .mapToLong(Long::longValue)
+                .sum()));
+    }
+
+    // Any shard will do: the version is the sum over all of them.
+    @Scheduled(fixedDelayString = "${app.accounts.change-counter.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        counters.flush(write -> shards.inTransaction(0, () -> {
+            write.run();
+            return null;
+        }), (table, delta) -> changeCounterRepository.increment(table, ThreadLocalRandom.current().nextInt(stripes), delta));
+    }
+}
@@ -0,0 +1,198 @@
+package com.junit.app.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.junit.app.models.Account;
+import com.junit.app.models.ImportResult;
+import com.junit.app.models.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams accounts from CSV ({@code name,balance}) or NDJSON into the database. Rows are persisted in
+ * chunks of {@code app.accounts.import.batch-size}, one transaction per chunk, so ids come from the
+ * pooled-lo sequence and inserts go out as JDBC batches. Invalid rows are counted and skipped.
+ */
+@Service
+@Slf4j
+public class AccountImportService {
+    public enum Format { CSV, NDJSON }
+
+    private final Shards shards;
+    private final EntityManager entityManager;
+    private final JournalService journalService;
+    private final Ledger ledger;
+    private final AccountNameIndex accountNameIndex;
+    private final TopBalances topBalances;
+    private final AccountChangeTracker accountChangeTracker;
+    private final ObjectReader accountReader;
+    private final int batchSize;
+    private final String startupFile;
+
+    public AccountImportService(Shards shards, EntityManager entityManager,
+                                JournalService journalService, Ledger ledger, AccountNameIndex accountNameIndex,
+                                TopBalances topBalances,
+                                AccountChangeTracker accountChangeTracker,
+                                ObjectMapper objectMapper,
+                                @Value("${app.accounts.import.batch-size:1000}") int batchSize,
+                                @Value("${app.accounts.import.file:}") String startupFile) {
+        this.shards = shards;
+        this.entityManager = entityManager;
+        this.journalService = journalService;
+        this.ledger = ledger;
+        this.accountNameIndex = accountNameIndex;
+        this.topBalances = topBalances;
+        this.accountChangeTracker = accountChangeTracker;
+        this.accountReader = objectMapper.readerFor(Account.class);
+        this.batchSize = batchSize;
+        this.startupFile = startupFile;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void importStartupFile() throws IOException {
+        if (startupFile.isEmpty()) {
+            return;
+        }
+        Path file = Paths.get(startupFile);
+        Format format = file.getFileName().toString().endsWith(".csv") ? Format.CSV : Format.NDJSON;
+        try (InputStream input = Files.newInputStream(file)) {
+            ImportResult result = importAccounts(input, format);
+            log.info("Imported {} accounts from {} in {}ms ({} rows/s, {} rejected)", result.getRows(), file,
+                    result.getMillis(), result.getRowsPerSecond(), result.getRejected());
+        }
+    }
+
+    public ImportResult importAccounts(InputStream input, Format format) throws IOException {
+        long began = System.nanoTime();
+        ImportResult result = new ImportResult();
+        List<Account> chunk = new ArrayList<>(batchSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && format == Format.CSV && line.trim().equalsIgnoreCase("name,balance"))) {
+                    continue;
+                }
+                try {
+                    chunk.add(parse(line, format));
+                } catch (IllegalArgumentException | IOException e) {
+                    if (result.getRejected() == 0) {
+                        result.setFirstError("Line " + lineNumber + ": " + e.getMessage());
+                    }
+                    result.setRejected(result.getRejected() + 1);
+                    continue;
+                }
+                if (chunk.size() == batchSize) {
+                    persist(chunk);
+                    result.setRows(result.getRows() + chunk.size());
+                    chunk.clear();
+                }
+            }
+        }
+        persist(chunk);
+        result.setRows(result.getRows() + chunk.size());
+
+        long nanos = Math.max(1, System.nanoTime() - began);
+        result.setMillis(nanos / 1_000_000);
+        result.setRowsPerSecond(result.getRows() * 1_000_000_000 / nanos);
+        return result;
+    }
+
+    private void persist(List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return;
+        }
+        // Each chunk goes to one shard, which hands out its ids.
+        shards.inTransaction(shards.nextShard(), () -> {
+            for (Account account : accounts) {
+                entityManager.persist(account);
+                long balance = Money.toMinorUnits(account.getBalance());
+                ledger.record(account.getId(), balance);
+                journalService.recordAdjustment(account.getId(), balance);
+            }
+            entityManager.flush();
+            entityManager.clear();
+            accountChangeTracker.changed();
+            List<Account> imported = new ArrayList<>(accounts);
+            TransactionHooks.afterCommit(() -> imported.forEach(account -> {
+                accountNameIndex.put(account.getId(), account.getName());
+                topBalances.put(account.getId(), account.getBalance());
+            }));
+            return null;
+        });
+    }
+
+    private Account parse(String line, Format format) throws IOException {
+        Account account;
+        if (format == Format.NDJSON) {
+            account = accountReader.readValue(line);
+        } else {
+            account = parseCsv(line);
+        }
+        if (account.getName() == null || account.getName().isBlank()) {
+            throw new IllegalArgumentException("Name is required");
+        }
+        if (Money.toMinorUnits(account.getBalance()) < 0) {
+            throw new IllegalArgumentException("Balance must not be negative");
+        }
+        account.setId(null);
+        return account;
+    }
+
+    // name,balance where the name may be double-quoted with "" escapes.
+    private Account parseCsv(String line) {
+        String name;
+        int comma;
+        if (line.startsWith("\"")) {
+            StringBuilder quoted = new StringBuilder();
+            int i = 1;
+            while (true) {
+                int quote = line.indexOf('"', i);
+                if (quote < 0) {
+                    throw new IllegalArgumentException("Unterminated quoted name");
+                }
+                quoted.append(line, i, quote);
+                if (quote + 1 < line.length() && line.charAt(quote + 1) == '"') {
+                    quoted.append('"');
+                    i = quote + 2;
+                } else {
+                    i = quote + 1;
+                    break;
+                }
+            }
+            name = quoted.toString();
+            comma = i;
+            if (comma >= line.length() || line.charAt(comma) != ',') {
+                throw new IllegalArgumentException("Expected name,balance");
+            }
+        } else {
+            comma = line.indexOf(',');
+            if (comma < 0) {
+                throw new IllegalArgumentException("Expected name,balance");
+            }
+            name = line.substring(0, comma).trim();
+        }
+        try {
+            return new Account(null, name, new BigDecimal(line.substring(comma + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid balance");
+        }
+    }
+}
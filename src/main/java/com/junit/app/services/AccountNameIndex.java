@@ -0,0 +1,92 @@
+package com.junit.app.services;
+
+import com.junit.app.repositories.AccountRepository;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of account names for prefix searches, loaded at startup and kept in step with
+ * this instance's commits. It does not see rows written by other instances, so exact lookups go to
+ * the indexed name column instead.
+ */
+@Component
+public class AccountNameIndex {
+    private final AccountRepository accountRepository;
+    private final Shards shards;
+    private final NavigableMap<String, NavigableSet<Long>> idsByName = new ConcurrentSkipListMap<>();
+    private final Map<Long, String> namesById = new ConcurrentHashMap<>();
+
+    public AccountNameIndex(AccountRepository accountRepository, Shards shards) {
+        this.accountRepository = accountRepository;
+        this.shards = shards;
+    }
+
+    @PostConstruct
+    public void load() {
+        shards.gather(shard -> shards.inTransaction(shard, () -> {
+            try (Stream<Object[]> rows = accountRepository.streamNames()) {
+                rows.forEach(row -> put((Long) row[0], (String) row[1]));
+            }
+            return null;
+        }));
+    }
+
+    // Writers are serialized so a rename cannot interleave with another update of the same id.
+    public synchronized void put(Long id, String name) {
+        String previous = name == null ? namesById.remove(id) : namesById.put(id, name);
+        if (previous != null && !previous.equals(name)) {
+            unlink(previous, id);
+        }
+        if (name != null) {
+            idsByName.computeIfAbsent(name, key -> new ConcurrentSkipListSet<>()).add(id);
+        }
+    }
+
+    public synchronized void remove(Long id) {
+        String previous = namesById.remove(id);
+        if (previous != null) {
+            unlink(previous, id);
+        }
+    }
+
+    public String name(Long id) {
+        return namesById.get(id);
+    }
+
+    // Ids of accounts whose name starts with prefix, ordered by name and then id.
+    public List<Long> search(String prefix, int limit) {
+        List<Long> ids = new ArrayList<>(Math.min(limit, 64));
+        NavigableMap<String, NavigableSet<Long>> matches = prefix.isEmpty()
+                ? idsByName
+                : idsByName.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        for (NavigableSet<Long> accountIds : matches.values()) {
+            for (Long id : accountIds) {
+                if (ids.size() == limit) {
+                    return ids;
+                }
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private void unlink(String name, Long id) {
+        NavigableSet<Long> ids = idsByName.get(name);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsByName.remove(name);
+            }
+        }
+    }
+}
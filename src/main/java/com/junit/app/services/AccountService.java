@@ -1,16 +1,35 @@
 package com.junit.app.services;
 
 import com.junit.app.models.Account;
+import com.junit.app.models.AccountBalance;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface AccountService {
     List<Account> findAll();
+    List<Account> findPage(Long afterId, int limit);
+    void streamAll(Consumer<Account> action);
     Account findById(Long id);
+    Optional<Long> findVersion(Long id);
+    String accountsVersion();
+    Optional<Account> findByName(String name);
+    List<Account> searchByName(String prefix, int limit);
+    List<AccountBalance> topBalances(int n);
     Account save(Account account);
+    Account overwrite(Account account);
     void deleteById(Long id);
     int reviewTotalTransfers(Long bankId);
     BigDecimal reviewBalance(Long accountId);
+    Optional<BigDecimal> balanceAt(Long accountId, Instant at);
+    void streamBalancesAt(Instant at, Consumer<AccountBalance> action);
+    Iterator<List<AccountBalance>> balancePagesAt(Instant at);
     void transfer(Long originAccountNumber, Long destinationAccountNumber, BigDecimal amount, Long bankId);
+    List<TransferResult> transferAll(List<TransactionDTO> transactions);
 }
@@ -1,78 +1,521 @@
 package com.junit.app.services;
 
+import com.junit.app.ReplicaRoutingDataSource;
+import com.junit.app.exceptions.NotEnoughMoney;
 import com.junit.app.models.Account;
+import com.junit.app.models.AccountBalance;
 import com.junit.app.models.Bank;
+import com.junit.app.models.Money;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferSaga;
+import com.junit.app.models.TransferResult;
 import com.junit.app.repositories.AccountRepository;
 import com.junit.app.repositories.BankRepository;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
 public class AccountServiceImpl implements AccountService {
+    private static final String NOT_ENOUGH_MONEY = "Not enough money for the account";
+    private static final String NOT_FOUND = "Account or bank not found";
 
     private AccountRepository accountRepository;
     private BankRepository bankRepository;
+    private TransferCounterService transferCounterService;
+    private RetryingTransactionTemplate retryingTransactionTemplate;
+    private EntityManager entityManager;
+    private AccountCache accountCache;
+    private TransferMetrics transferMetrics;
+    private JournalService journalService;
+    private AccountNameIndex accountNameIndex;
+    private AccountChangeTracker accountChangeTracker;
+    private BankTransferStats bankTransferStats;
+    private TopBalances topBalances;
+    private TransferAdmission transferAdmission;
+    private Shards shards;
+    private TransferSagas transferSagas;
+    private Ledger ledger;
+    private TransferNetting transferNetting;
 
+    // Scatter-gather: every shard is read in parallel and the results are merged by id.
     @Override
-    @Transactional(readOnly = true)
     public List<Account> findAll() {
-        return accountRepository.findAll();
+        return mergeById(shards.gather(shard -> shards.readOnly(shard, accountRepository::findAll)), Integer.MAX_VALUE);
     }
 
     @Override
-    @Transactional(readOnly = true)
+    public List<Account> findPage(Long afterId, int limit) {
+        long after = afterId == null ? Long.MIN_VALUE : afterId;
+        return mergeById(shards.gather(shard -> shards.readOnly(shard,
+                () -> accountRepository.findPageAfter(after, PageRequest.of(0, limit)))), limit);
+    }
+
+    // Shards are streamed one after another, so accounts arrive ordered by id within each shard only.
+    @Override
+    public void streamAll(Consumer<Account> action) {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            shards.readOnly(shard, () -> {
+                try (Stream<Account> accounts = accountRepository.streamAll()) {
+                    accounts.forEach(account -> {
+                        action.accept(account);
+                        entityManager.detach(account);
+                    });
+                }
+                return null;
+            });
+        }
+    }
+
+    private static List<Account> mergeById(List<List<Account>> perShard, int limit) {
+        if (perShard.size() == 1) {
+            List<Account> accounts = perShard.get(0);
+            return accounts.size() <= limit ? accounts : accounts.subList(0, limit);
+        }
+        return perShard.stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(Account::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    // Not transactional, so a cache hit never checks out a connection; a miss reads in the repository's own read-only transaction.
+    @Override
     public Account findById(Long id) {
-        return accountRepository.findById(id).orElseThrow();
+        Account account = accountCache.get(id);
+        if (account != null) {
+            return account;
+        }
+        long token = accountCache.token(id);
+        ReplicaRoutingDataSource.takeReplicaRead();
+        account = shards.call(shards.shardOf(id), () -> accountRepository.findById(id)).orElseThrow();
+        // A replica may lag the primary by more than the cache TTL allows for, so what it served is not cached.
+        if (!ReplicaRoutingDataSource.takeReplicaRead()) {
+            accountCache.put(account, token);
+        }
+        return account;
     }
 
+    // Answered from the cache when possible, otherwise by a query that reads only the version column.
+    @Override
+    public Optional<Long> findVersion(Long id) {
+        Account account = accountCache.get(id);
+        if (account != null) {
+            return Optional.of(account.getVersion());
+        }
+        return shards.call(shards.shardOf(id), () -> accountRepository.findVersionById(id));
+    }
+
+    @Override
+    public String accountsVersion() {
+        return accountChangeTracker.version();
+    }
+
+    // Asks the indexed column on every shard: the name index only knows this instance's commits.
+    @Override
+    public Optional<Account> findByName(String name) {
+        return shards.gather(shard -> shards.readOnly(shard, () -> accountRepository.findByName(name))).stream()
+                .flatMap(Optional::stream)
+                .min(Comparator.comparing(Account::getId));
+    }
+
+    @Override
+    public List<Account> searchByName(String prefix, int limit) {
+        List<Long> ids = accountNameIndex.search(prefix, limit);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Integer, List<Long>> idsByShard = ids.stream().collect(Collectors.groupingBy(shards::shardOf));
+        Map<Long, Account> accounts = shards.gather(shard -> idsByShard.containsKey(shard)
+                        ? shards.readOnly(shard, () -> accountRepository.findAllById(idsByShard.get(shard)))
+                        : Collections.<Account>emptyList()).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(Account::getId, Function.identity()));
+        return ids.stream().map(accounts::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    // Served entirely from memory: balances from the ordered set, names from the name index.
+    @Override
+    public List<AccountBalance> topBalances(int n) {
+        return topBalances.top(n).stream()
+                .map(entry -> new AccountBalance(entry.getKey(), accountNameIndex.name(entry.getKey()), entry.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    // New accounts are placed round-robin; their id then comes from the chosen shard's sequence.
     @Override
-    @Transactional
     public Account save(Account account) {
-        return accountRepository.save(account);
+        int shard = account.getId() == null ? shards.nextShard() : shards.shardOf(account.getId());
+        return shards.inTransaction(shard, () -> saveOnShard(account));
+    }
+
+    // Saves over whatever version is stored; a change committed between that read and the write still conflicts.
+    @Override
+    public Account overwrite(Account account) {
+        return shards.inTransaction(shards.shardOf(account.getId()), () -> {
+            accountRepository.findVersionById(account.getId()).ifPresent(account::setVersion);
+            return saveOnShard(account);
+        });
+    }
+
+    // An existing account is published to TopBalances as a delta, so it composes with transfer deltas in any order;
+    // a new one as its balance, which no transfer can precede since its id is only handed out after this hook.
+    private Account saveOnShard(Account account) {
+        Optional<Long> before = account.getId() == null ? Optional.empty()
+                : accountRepository.findBalanceById(account.getId()).map(AccountServiceImpl::minorUnits);
+        Account saved = accountRepository.save(account);
+        long balance = minorUnits(saved.getBalance());
+        long delta = balance - before.orElse(0L);
+        ledger.record(saved.getId(), delta);
+        journalService.recordAdjustment(saved.getId(), delta);
+        accountChangeTracker.changed();
+        TransactionHooks.afterCommit(() -> {
+            accountCache.invalidate(saved.getId());
+            accountNameIndex.put(saved.getId(), saved.getName());
+            if (before.isPresent()) {
+                topBalances.add(saved.getId(), delta);
+            } else {
+                topBalances.put(saved.getId(), balance);
+            }
+        });
+        return saved;
     }
 
     @Override
-    @Transactional
     public void deleteById(Long id) {
-        accountRepository.deleteById(id);
+        shards.inTransaction(shards.shardOf(id), () -> {
+            accountRepository.findBalanceById(id).ifPresent(balance -> ledger.record(id, -minorUnits(balance)));
+            accountRepository.deleteById(id);
+            journalService.recordClose(id);
+            accountChangeTracker.changed();
+            TransactionHooks.afterCommit(() -> {
+                accountCache.invalidate(id);
+                accountNameIndex.remove(id);
+                topBalances.remove(id);
+            });
+            return null;
+        });
     }
 
     @Override
     @Transactional(readOnly = true)
     public int reviewTotalTransfers(Long bankId) {
         Bank bank = bankRepository.findById(bankId).orElseThrow();
-        return bank.getTotalTransfers();
+        return Math.toIntExact(bank.getTotalTransfers() + transferCounterService.count(bankId));
     }
 
     @Override
-    @Transactional(readOnly = true)
     public BigDecimal reviewBalance(Long accountId) {
-        Account account = accountRepository.findById(accountId).orElseThrow();
-        return account.getBalance();
+        return findById(accountId).getBalance();
+    }
+
+    @Override
+    public Optional<BigDecimal> balanceAt(Long accountId, Instant at) {
+        return ledger.balanceAt(accountId, at.toEpochMilli());
+    }
+
+    @Override
+    public void streamBalancesAt(Instant at, Consumer<AccountBalance> action) {
+        ledger.balancesAt(at.toEpochMilli(), (id, balance) -> action.accept(new AccountBalance(id, accountNameIndex.name(id), balance)));
     }
 
+    // One page per ledger range, read only when the caller asks for the next one.
+    @Override
+    public Iterator<List<AccountBalance>> balancePagesAt(Instant at) {
+        Iterator<Map<Long, BigDecimal>> ranges = ledger.rangesAt(at.toEpochMilli());
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return ranges.hasNext();
+            }
+
+            @Override
+            public List<AccountBalance> next() {
+                List<AccountBalance> page = new ArrayList<>();
+                ranges.next().forEach((id, balance) -> page.add(new AccountBalance(id, accountNameIndex.name(id), balance)));
+                return page;
+            }
+        };
+    }
+
+    // Admission runs first, so a rejected transfer never opens a transaction or takes a connection.
     @Override
-    @Transactional
     public void transfer(Long originAccountNumber, Long destinationAccountNumber,
                          BigDecimal amount, Long bankId) {
+        transferAdmission.run(originAccountNumber, bankId, () -> transferMetrics.record(amount, () -> {
+            if (transferNetting.isEnabled()) {
+                netTransfer(originAccountNumber, destinationAccountNumber, amount, bankId);
+            } else {
+                routeTransfer(originAccountNumber, destinationAccountNumber, amount, bankId);
+            }
+        }));
+    }
+
+    // Waits for the pair's netting window to settle, then reports this transfer's own outcome as a direct transfer would.
+    private void netTransfer(Long originAccountNumber, Long destinationAccountNumber, BigDecimal amount, Long bankId) {
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setOriginAccountId(originAccountNumber);
+        transaction.setDestinationAccountId(destinationAccountNumber);
+        transaction.setAmount(amount);
+        transaction.setBankId(bankId);
+        TransferResult result;
+        try {
+            result = transferNetting.submit(transaction, this::settleTransfers).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the netting window", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        if ("OK".equals(result.getStatus())) {
+            return;
+        }
+        if (NOT_ENOUGH_MONEY.equals(result.getMessage())) {
+            throw new NotEnoughMoney(NOT_ENOUGH_MONEY);
+        }
+        if (NOT_FOUND.equals(result.getMessage())) {
+            throw new NoSuchElementException(NOT_FOUND);
+        }
+        throw new IllegalArgumentException(result.getMessage());
+    }
 
-        Account originAccount = accountRepository.findById(originAccountNumber).orElseThrow();
-        originAccount.debit(amount);
-        accountRepository.save(originAccount);
+    // Accounts on one shard transfer in a local transaction; across shards the transfer runs as a saga.
+    private void routeTransfer(Long originAccountNumber, Long destinationAccountNumber,
+                               BigDecimal amount, Long bankId) {
+        int shard = shards.shardOf(originAccountNumber);
+        if (shard == shards.shardOf(destinationAccountNumber)) {
+            shards.run(shard, () -> transferInTransaction(originAccountNumber, destinationAccountNumber, amount, bankId));
+            return;
+        }
+        try {
+            if (transferSagas.transfer(originAccountNumber, destinationAccountNumber, amount, bankId)) {
+                recordTransfer(originAccountNumber, destinationAccountNumber, bankId, Money.toMinorUnits(amount));
+            }
+        } finally {
+            accountCache.invalidate(originAccountNumber);
+            accountCache.invalidate(destinationAccountNumber);
+        }
+    }
 
-        Account destinationAccount = accountRepository.findById(destinationAccountNumber).orElseThrow();
-        destinationAccount.credit(amount);
-        accountRepository.save(destinationAccount);
+    private void transferInTransaction(Long originAccountNumber, Long destinationAccountNumber,
+                                       BigDecimal amount, Long bankId) {
+        retryingTransactionTemplate.execute(() -> {
+            if (!bankRepository.existsById(bankId)) {
+                throw new NoSuchElementException("No bank " + bankId);
+            }
+            // Rows are updated in id order, so transfers running in opposite directions cannot deadlock.
+            if (originAccountNumber <= destinationAccountNumber) {
+                debit(originAccountNumber, amount);
+                credit(destinationAccountNumber, amount);
+            } else {
+                credit(destinationAccountNumber, amount);
+                debit(originAccountNumber, amount);
+            }
+            long minorUnits = Money.toMinorUnits(amount);
+            ledger.recordTransfer(originAccountNumber, destinationAccountNumber, minorUnits);
+            recordTransfer(originAccountNumber, destinationAccountNumber, bankId, minorUnits);
+            return null;
+        });
+    }
 
-        Bank bank = bankRepository.findById(bankId).orElseThrow();
-        int totalTransfers = bank.getTotalTransfers();
-        bank.setTotalTransfers(++totalTransfers);
-        bankRepository.save(bank);
+    // Publishes a transfer to the counters, stats, journal and in-memory views; after commit, or at once outside a transaction.
+    private void recordTransfer(Long originAccountNumber, Long destinationAccountNumber, Long bankId, long minorUnits) {
+        transferCounterService.increment(bankId);
+        bankTransferStats.record(bankId, minorUnits);
+        journalService.recordTransfer(originAccountNumber, destinationAccountNumber, bankId, minorUnits);
+        accountChangeTracker.changed();
+        TransactionHooks.afterCommit(() -> {
+            accountCache.invalidate(originAccountNumber);
+            accountCache.invalidate(destinationAccountNumber);
+            topBalances.add(originAccountNumber, -minorUnits);
+            topBalances.add(destinationAccountNumber, minorUnits);
+        });
+    }
+
+    // Settles cross-shard transfers left PENDING by a crash or a failed step.
+    @Scheduled(fixedDelayString = "${app.shards.saga.recovery-interval-ms:5000}")
+    public void recoverTransfers() {
+        if (shards.count() == 1) {
+            return;
+        }
+        for (TransferSaga saga : transferSagas.recover()) {
+            if (saga.getState() == TransferSaga.State.COMPLETED) {
+                recordTransfer(saga.getOriginAccountId(), saga.getDestinationAccountId(), saga.getBankId(),
+                        Money.toMinorUnits(saga.getAmount()));
+            } else {
+                accountCache.invalidate(saga.getOriginAccountId());
+            }
+        }
+    }
+
+    private void debit(Long accountId, BigDecimal amount) {
+        if (accountRepository.debit(accountId, amount) == 0) {
+            if (!accountRepository.existsById(accountId)) {
+                throw new NoSuchElementException("No account " + accountId);
+            }
+            throw new NotEnoughMoney(NOT_ENOUGH_MONEY);
+        }
+    }
+
+    private void credit(Long accountId, BigDecimal amount) {
+        if (accountRepository.credit(accountId, amount) == 0) {
+            throw new NoSuchElementException("No account " + accountId);
+        }
+    }
+
+    @Override
+    public List<TransferResult> transferAll(List<TransactionDTO> transactions) {
+        List<TransferResult> results = settleTransfers(transactions);
+        for (TransferResult result : results) {
+            if ("OK".equals(result.getStatus())) {
+                transferMetrics.succeeded(result.getTransaction().getAmount());
+            } else if (NOT_ENOUGH_MONEY.equals(result.getMessage())) {
+                transferMetrics.rejected();
+            }
+        }
+        return results;
+    }
+
+    private List<TransferResult> settleTransfers(List<TransactionDTO> transactions) {
+        Set<Integer> involved = transactions.stream()
+                .flatMap(t -> Stream.of(t.getOriginAccountId(), t.getDestinationAccountId()))
+                .filter(Objects::nonNull)
+                .map(shards::shardOf)
+                .collect(Collectors.toSet());
+        List<TransferResult> results;
+        if (involved.size() <= 1) {
+            int shard = involved.isEmpty() ? 0 : involved.iterator().next();
+            results = shards.call(shard, () -> retryingTransactionTemplate.execute(() -> applyTransfers(transactions)));
+        } else {
+            // A batch spanning shards cannot commit atomically, so each transfer is applied on its own.
+            results = transactions.stream().map(this::applyTransfer).collect(Collectors.toList());
+        }
+        return results;
+    }
+
+    private TransferResult applyTransfer(TransactionDTO transaction) {
+        if (transaction.getOriginAccountId() == null || transaction.getDestinationAccountId() == null
+                || transaction.getBankId() == null) {
+            return new TransferResult(transaction, "ERROR", NOT_FOUND);
+        }
+        try {
+            Money.toTransferAmount(transaction.getAmount());
+            routeTransfer(transaction.getOriginAccountId(), transaction.getDestinationAccountId(),
+                    transaction.getAmount(), transaction.getBankId());
+            return new TransferResult(transaction, "OK", "Transfer done successfully");
+        } catch (NoSuchElementException e) {
+            return new TransferResult(transaction, "ERROR", NOT_FOUND);
+        } catch (NotEnoughMoney | IllegalArgumentException e) {
+            return new TransferResult(transaction, "ERROR", e.getMessage());
+        }
+    }
+
+    private List<TransferResult> applyTransfers(List<TransactionDTO> transactions) {
+        Set<Long> accountIds = transactions.stream()
+                .flatMap(t -> Stream.of(t.getOriginAccountId(), t.getDestinationAccountId()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Set<Long> bankIds = transactions.stream()
+                .map(TransactionDTO::getBankId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        Map<Long, Account> accounts = lockAccounts(accountIds);
+        Set<Long> banks = bankRepository.findAllById(bankIds).stream()
+                .map(Bank::getId)
+                .collect(Collectors.toSet());
+        Map<Long, Integer> transfersByBank = new HashMap<>();
+
+        // Balances are held as minor units while the batch runs and written back once per account.
+        Map<Long, long[]> balances = new HashMap<>();
+        accounts.forEach((id, account) -> balances.put(id, new long[]{Money.toMinorUnits(account.getBalance())}));
+
+        List<TransferResult> results = new ArrayList<>(transactions.size());
+        for (TransactionDTO transaction : transactions) {
+            long[] originBalance = balances.get(transaction.getOriginAccountId());
+            long[] destinationBalance = balances.get(transaction.getDestinationAccountId());
+            if (originBalance == null || destinationBalance == null || !banks.contains(transaction.getBankId())) {
+                results.add(new TransferResult(transaction, "ERROR", NOT_FOUND));
+                continue;
+            }
+            long amount;
+            try {
+                amount = Money.toTransferAmount(transaction.getAmount());
+            } catch (IllegalArgumentException e) {
+                results.add(new TransferResult(transaction, "ERROR", e.getMessage()));
+                continue;
+            }
+            if (originBalance[0] < amount) {
+                results.add(new TransferResult(transaction, "ERROR", NOT_ENOUGH_MONEY));
+                continue;
+            }
+            originBalance[0] -= amount;
+            destinationBalance[0] = Math.addExact(destinationBalance[0], amount);
+            transfersByBank.merge(transaction.getBankId(), 1, Integer::sum);
+            bankTransferStats.record(transaction.getBankId(), amount);
+            journalService.recordTransfer(transaction.getOriginAccountId(), transaction.getDestinationAccountId(),
+                    transaction.getBankId(), amount);
+            results.add(new TransferResult(transaction, "OK", "Transfer done successfully"));
+        }
+
+        // Changes are published as deltas, so they compose with other commits whatever order their hooks run in.
+        Map<Long, Long> deltas = new HashMap<>();
+        accounts.forEach((id, account) -> {
+            long balance = balances.get(id)[0];
+            long delta = balance - Money.toMinorUnits(account.getBalance());
+            if (delta != 0) {
+                account.setBalance(Money.fromMinorUnits(balance));
+                deltas.put(id, delta);
+            }
+        });
+        accountRepository.saveAll(accounts.values());
+        deltas.forEach(ledger::record);
+        transfersByBank.forEach(transferCounterService::add);
+        if (!deltas.isEmpty()) {
+            accountChangeTracker.changed();
+        }
+        TransactionHooks.afterCommit(() -> {
+            accounts.keySet().forEach(accountCache::invalidate);
+            deltas.forEach(topBalances::add);
+        });
+        return results;
+    }
+
+    private static long minorUnits(BigDecimal balance) {
+        return balance == null ? 0 : Money.toMinorUnits(balance);
+    }
+
+    // Rows are locked in id order, so transfers running in opposite directions cannot deadlock.
+    private Map<Long, Account> lockAccounts(Collection<Long> ids) {
+        return accountRepository.findAllByIdForUpdate(ids).stream()
+                .collect(Collectors.toMap(Account::getId, Function.identity()));
     }
 }
@@ -0,0 +1,158 @@
+package com.junit.app.services;
+
+import com.junit.app.models.BankStats;
+import com.junit.app.models.Money;
+import com.junit.app.models.WindowStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Sliding-window transfer statistics per bank, kept in memory and updated in O(1) per transfer
+ * without taking a lock. Each window is a ring of fixed-width time buckets; a bucket is replaced
+ * lazily when the clock has moved past it, so nothing ever scans history and reading never touches
+ * the database.
+ */
+@Service
+public class BankTransferStats {
+    private static final Window[] WINDOWS = {
+            new Window("1m", 1_000, 60),
+            new Window("5m", 5_000, 60),
+            new Window("1h", 60_000, 60),
+            new Window("24h", 900_000, 96)
+    };
+
+    private final Map<Long, Rings> banks = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+
+    @Autowired
+    public BankTransferStats() {
+        this(System::currentTimeMillis);
+    }
+
+    public BankTransferStats(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    public void record(Long bankId, BigDecimal amount) {
+        record(bankId, Money.toMinorUnits(amount));
+    }
+
+    // Counted only once the transaction commits, so rolled-back transfers never show up.
+    public void record(Long bankId, long amount) {
+        TransactionHooks.afterCommit(() -> add(bankId, amount));
+    }
+
+    private void add(Long bankId, long amount) {
+        banks.computeIfAbsent(bankId, id -> new Rings()).add(clock.getAsLong(), amount);
+    }
+
+    public BankStats stats(Long bankId) {
+        Rings rings = banks.get(bankId);
+        long now = clock.getAsLong();
+        Map<String, WindowStats> windows = new LinkedHashMap<>();
+        for (int i = 0; i < WINDOWS.length; i++) {
+            windows.put(WINDOWS[i].name, rings == null ? WINDOWS[i].empty() : rings.snapshot(i, now));
+        }
+        return new BankStats(bankId, windows);
+    }
+
+    private static final class Window {
+        private final String name;
+        private final long bucketMillis;
+        private final int buckets;
+
+        private Window(String name, long bucketMillis, int buckets) {
+            this.name = name;
+            this.bucketMillis = bucketMillis;
+            this.buckets = buckets;
+        }
+
+        private WindowStats empty() {
+            return new WindowStats(0, BigDecimal.ZERO.setScale(Money.SCALE), null, null, 0);
+        }
+    }
+
+    // One ring of buckets per window. Writers never lock: a bucket is stamped with its epoch and replaced by CAS when
+    // the clock reaches a new one, and its counters are striped adders, so concurrent transfers for a bank do not
+    // contend on a monitor or a single cache line.
+    private static final class Rings {
+        private final AtomicReferenceArray<Bucket>[] rings;
+
+        @SuppressWarnings("unchecked")
+        private Rings() {
+            rings = new AtomicReferenceArray[WINDOWS.length];
+            for (int i = 0; i < WINDOWS.length; i++) {
+                rings[i] = new AtomicReferenceArray<>(WINDOWS[i].buckets);
+            }
+        }
+
+        private void add(long now, long amount) {
+            for (int i = 0; i < WINDOWS.length; i++) {
+                long epoch = now / WINDOWS[i].bucketMillis;
+                int slot = (int) (epoch % WINDOWS[i].buckets);
+                Bucket bucket = rings[i].get(slot);
+                while (bucket == null || bucket.epoch < epoch) {
+                    Bucket next = new Bucket(epoch);
+                    bucket = rings[i].compareAndSet(slot, bucket, next) ? next : rings[i].get(slot);
+                }
+                // A writer whose clock read lags behind a bucket already reused for a later epoch has nowhere to go.
+                if (bucket.epoch == epoch) {
+                    bucket.add(amount);
+                }
+            }
+        }
+
+        private WindowStats snapshot(int window, long now) {
+            Window w = WINDOWS[window];
+            long current = now / w.bucketMillis;
+            long count = 0;
+            long sum = 0;
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int slot = 0; slot < w.buckets; slot++) {
+                Bucket bucket = rings[window].get(slot);
+                if (bucket != null && bucket.epoch > current - w.buckets && bucket.epoch <= current) {
+                    count += bucket.count.sum();
+                    sum += bucket.sum.sum();
+                    min = Math.min(min, bucket.min.get());
+                    max = Math.max(max, bucket.max.get());
+                }
+            }
+            if (count == 0) {
+                return w.empty();
+            }
+            double seconds = w.bucketMillis * w.buckets / 1000.0;
+            return new WindowStats(count, Money.fromMinorUnits(sum), Money.fromMinorUnits(min),
+                    Money.fromMinorUnits(max), count / seconds);
+        }
+    }
+
+    private static final class Bucket {
+        private final long epoch;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator min = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+
+        // Count goes last, so a reader that sees a transfer counted also sees its min and max.
+        private void add(long amount) {
+            min.accumulate(amount);
+            max.accumulate(amount);
+            sum.add(amount);
+            count.increment();
+        }
+    }
+}
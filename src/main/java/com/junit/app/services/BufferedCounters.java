@@ -0,0 +1,108 @@
+package com.junit.app.services;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counts held in memory after the transaction they count commits and written to the database by a
+ * periodic flush, so the hot path never updates a shared counter row. A read adds what is still in
+ * memory to what is stored, and sees every count exactly once: pending, being flushed, or stored.
+ */
+final class BufferedCounters<K> {
+    private final Map<K, LongAdder> pending = new ConcurrentHashMap<>();
+    // Counts taken out of pending by a flush whose transaction has not completed yet.
+    private final Map<K, Long> flushing = new HashMap<>();
+    // Held for writing only while a flush swaps the counts out and while it commits.
+    private final ReentrantReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    // Counted once the surrounding transaction commits, or right away when there is none.
+    void add(K key, long delta) {
+        if (delta != 0) {
+            TransactionHooks.afterCommit(() -> pending.computeIfAbsent(key, id -> new LongAdder()).add(delta));
+        }
+    }
+
+    long read(K key, ToLongFunction<K> stored) {
+        flushLock.readLock().lock();
+        try {
+            LongAdder adder = pending.get(key);
+            return stored.applyAsLong(key) + (adder == null ? 0 : adder.sum()) + flushing.getOrDefault(key, 0L);
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    // Writes the pending counts in one transaction run by inTransaction; if they do not commit they go back to pending.
+    void flush(Consumer<Runnable> inTransaction, BiConsumer<K, Long> write) {
+        Map<K, Long> deltas = new HashMap<>();
+        flushLock.writeLock().lock();
+        try {
+            pending.forEach((key, adder) -> {
+                long delta = adder.sumThenReset();
+                if (delta != 0) {
+                    deltas.put(key, delta);
+                    flushing.merge(key, delta, Long::sum);
+                }
+            });
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        Settlement settlement = new Settlement(deltas);
+        try {
+            inTransaction.accept(() -> {
+                TransactionSynchronizationManager.registerSynchronization(settlement);
+                deltas.forEach(write);
+            });
+        } finally {
+            // The transaction could not even start: the counts go back to pending.
+            if (!settlement.settled) {
+                settlement.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        }
+    }
+
+    // Takes the write lock for the commit, then retires the flushed counts or, if they did not commit, restores them.
+    private final class Settlement implements TransactionSynchronization {
+        private final Map<K, Long> deltas;
+        private boolean settled;
+
+        private Settlement(Map<K, Long> deltas) {
+            this.deltas = deltas;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            flushLock.writeLock().lock();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (!flushLock.isWriteLockedByCurrentThread()) {
+                flushLock.writeLock().lock();
+            }
+            try {
+                deltas.forEach((key, delta) -> {
+                    flushing.computeIfPresent(key, (id, flushed) -> flushed - delta == 0 ? null : flushed - delta);
+                    if (status != STATUS_COMMITTED) {
+                        pending.computeIfAbsent(key, id -> new LongAdder()).add(delta);
+                    }
+                });
+                settled = true;
+            } finally {
+                flushLock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.junit.app.services;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.JournalEntry;
+import com.junit.app.models.Money;
+import com.junit.app.repositories.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Journals committed balance changes when {@code app.journal.enabled=true}, as deltas, so records
+ * replay to the same balances whatever order concurrent commits appended them in. The database stays
+ * the system of record: records are appended after commit and forced to disk every
+ * {@code app.journal.fsync-interval-ms}, so a crash can lose the last few. On startup the projection
+ * is rebuilt from the latest snapshot plus replay and then reconciled with the accounts table, each
+ * difference journaled as an adjustment; the table itself is never written from the journal.
+ */
+@Service
+@Slf4j
+public class JournalService {
+    private final AccountRepository accountRepository;
+    private final Shards shards;
+    private final TransferJournal journal;
+
+    public JournalService(AccountRepository accountRepository, Shards shards,
+                          @Value("${app.journal.enabled:false}") boolean enabled,
+                          @Value("${app.journal.dir:journal}") String directory,
+                          @Value("${app.journal.segment-bytes:67108864}") int segmentBytes) {
+        this.accountRepository = accountRepository;
+        this.shards = shards;
+        this.journal = enabled ? new TransferJournal(Paths.get(directory), segmentBytes) : null;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        Map<Long, Long> stored = shards.gather(shard -> shards.inTransaction(shard, accountRepository::findAll)).stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toMap(Account::getId, account -> Money.toMinorUnits(account.getBalance())));
+        journal.open(() -> stored);
+        // Records lost between commit and fsync, or changes made while journaling was off.
+        Map<Long, Long> projected = journal.balances();
+        int adjusted = 0;
+        for (Map.Entry<Long, Long> account : new TreeMap<>(stored).entrySet()) {
+            long delta = account.getValue() - projected.getOrDefault(account.getKey(), 0L);
+            if (delta != 0) {
+                journal.appendAdjustment(account.getKey(), delta);
+                adjusted++;
+            }
+        }
+        for (Long closed : new TreeSet<>(projected.keySet())) {
+            if (!stored.containsKey(closed)) {
+                journal.appendClose(closed);
+                adjusted++;
+            }
+        }
+        if (adjusted > 0) {
+            journal.force();
+            log.warn("Journal was behind the database for {} accounts; appended adjustments", adjusted);
+        }
+    }
+
+    public Map<Long, Long> balances() {
+        return journal == null ? Collections.emptyMap() : journal.balances();
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    public void recordTransfer(Long originAccountId, Long destinationAccountId, Long bankId, long amount) {
+        if (journal != null) {
+            TransactionHooks.afterCommit(() -> journal.appendTransfer(originAccountId, destinationAccountId, bankId, amount));
+        }
+    }
+
+    public void recordAdjustment(Long accountId, long delta) {
+        if (journal != null && delta != 0) {
+            TransactionHooks.afterCommit(() -> journal.appendAdjustment(accountId, delta));
+        }
+    }
+
+    public void recordClose(Long accountId) {
+        if (journal != null) {
+            TransactionHooks.afterCommit(() -> journal.appendClose(accountId));
+        }
+    }
+
+    public List<JournalEntry> read(long fromSequence, int limit) {
+        if (journal == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return journal.read(fromSequence, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.journal.fsync-interval-ms:100}")
+    public void force() {
+        if (journal != null) {
+            journal.force();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.journal.snapshot-interval-ms:60000}")
+    public void snapshot() throws IOException {
+        if (journal != null) {
+            journal.snapshot();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.snapshot();
+            journal.close();
+        }
+    }
+}
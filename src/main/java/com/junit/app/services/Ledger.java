@@ -0,0 +1,307 @@
+package com.junit.app.services;
+
+import com.junit.app.models.BalanceCheckpoint;
+import com.junit.app.models.LedgerCut;
+import com.junit.app.models.LedgerEntry;
+import com.junit.app.models.Money;
+import com.junit.app.repositories.BalanceCheckpointRepository;
+import com.junit.app.repositories.LedgerCutRepository;
+import com.junit.app.repositories.LedgerEntryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Timestamped ledger of balance changes with periodic per-account checkpoints. Entries are written in
+ * the transaction that changes the balance and stamped just before it commits, however long it ran.
+ * Every {@code app.ledger.checkpoint-interval-ms} a run checkpoints each account with entries since
+ * the previous cut, up to a new cut that lags the clock by {@code app.ledger.commit-lag-ms} so that
+ * no commit under way can land behind it; the cut is published once every range has committed. A
+ * balance at time T is then the latest checkpoint at or before T plus the entries after it, found
+ * through the (account, time) indexes with at most one interval of entries to replay.
+ */
+@Service
+public class Ledger {
+    private static final int BATCH_SIZE = 500;
+
+    private final Shards shards;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final BalanceCheckpointRepository balanceCheckpointRepository;
+    private final LedgerCutRepository ledgerCutRepository;
+    private final EntityManager entityManager;
+    private final long commitLagMillis;
+    private final long rangeSize;
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    public Ledger(Shards shards, LedgerEntryRepository ledgerEntryRepository,
+                  BalanceCheckpointRepository balanceCheckpointRepository, LedgerCutRepository ledgerCutRepository,
+                  EntityManager entityManager,
+                  @Value("${app.ledger.commit-lag-ms:5000}") long commitLagMillis,
+                  @Value("${app.ledger.range-size:100000}") long rangeSize,
+                  @Value("${app.ledger.parallelism:4}") int parallelism) {
+        this.shards = shards;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.balanceCheckpointRepository = balanceCheckpointRepository;
+        this.ledgerCutRepository = ledgerCutRepository;
+        this.entityManager = entityManager;
+        this.commitLagMillis = commitLagMillis;
+        this.rangeSize = rangeSize;
+        this.parallelism = parallelism;
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ledger-range");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Opens the history of accounts that have none with their current balance.
+    @PostConstruct
+    public void open() {
+        shards.gather(shard -> shards.inTransaction(shard, () -> {
+            long now = System.currentTimeMillis();
+            int[] pending = {0};
+            try (Stream<Object[]> rows = ledgerEntryRepository.streamUnrecordedBalances()) {
+                rows.forEach(row -> {
+                    if (row[1] != null) {
+                        entityManager.persist(new LedgerEntry(null, (Long) row[0], now, Money.toMinorUnits((BigDecimal) row[1])));
+                    }
+                    if (++pending[0] % BATCH_SIZE == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                });
+            }
+            return null;
+        }));
+    }
+
+    // Must run inside the transaction that changes the balance; a zero change leaves no entry.
+    public void record(Long accountId, long amount) {
+        if (amount != 0) {
+            LedgerEntry entry = new LedgerEntry(null, accountId, System.currentTimeMillis(), amount);
+            entityManager.persist(entry);
+            stampAtCommit(entry.getId());
+        }
+    }
+
+    public void recordTransfer(Long originAccountId, Long destinationAccountId, long amount) {
+        record(originAccountId, -amount);
+        record(destinationAccountId, amount);
+    }
+
+    // Empty when the account had no history at that time.
+    public Optional<BigDecimal> balanceAt(Long accountId, long at) {
+        return shards.readOnly(shards.shardOf(accountId), () -> {
+            List<BalanceCheckpoint> checkpoint = balanceCheckpointRepository.findLatest(accountId, at, PageRequest.of(0, 1));
+            long after = checkpoint.isEmpty() ? Long.MIN_VALUE : checkpoint.get(0).getAt();
+            Object[] replay = ledgerEntryRepository.sumBetween(accountId, after, at).get(0);
+            if (checkpoint.isEmpty() && ((Number) replay[1]).longValue() == 0) {
+                return Optional.empty();
+            }
+            long base = checkpoint.isEmpty() ? 0 : checkpoint.get(0).getBalance();
+            return Optional.of(Money.fromMinorUnits(base + ((Number) replay[0]).longValue()));
+        });
+    }
+
+    /**
+     * Passes every account's balance at {@code at} to the action, shard by shard and in id order within
+     * each shard. Account ranges are evaluated in parallel, at most {@code app.ledger.parallelism} at a
+     * time, and handed over in order, so memory stays bounded by a few ranges.
+     */
+    public void balancesAt(long at, BiConsumer<Long, BigDecimal> action) {
+        for (int shard = 0; shard < shards.count(); shard++) {
+            int target = shard;
+            Object[] bounds = shards.readOnly(shard, () -> ledgerEntryRepository.accountBounds().get(0));
+            if (bounds[0] == null) {
+                continue;
+            }
+            long after = lastCut(shard, at);
+            inRanges((Long) bounds[0], (Long) bounds[1], (fromId, toId) -> readRange(target, after, at, fromId, toId),
+                    balances -> balances.forEach(action));
+        }
+    }
+
+    /**
+     * The same balances, in the same order, for a consumer that sets its own pace: each next() reads one
+     * range of accounts in one read-only transaction, and nothing is read before it is asked for.
+     */
+    public Iterator<Map<Long, BigDecimal>> rangesAt(long at) {
+        return new Iterator<>() {
+            private int shard = -1;
+            private long after;
+            private long nextId;
+            private long maxId;
+
+            @Override
+            public boolean hasNext() {
+                while (shard < 0 || nextId > maxId) {
+                    if (++shard >= shards.count()) {
+                        return false;
+                    }
+                    Object[] bounds = shards.readOnly(shard, () -> ledgerEntryRepository.accountBounds().get(0));
+                    if (bounds[0] != null) {
+                        after = lastCut(shard, at);
+                        nextId = (Long) bounds[0];
+                        maxId = (Long) bounds[1];
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Map<Long, BigDecimal> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long fromId = nextId;
+                long toId = maxId - fromId < rangeSize ? maxId : fromId + rangeSize - 1;
+                nextId = toId + 1;
+                return readRange(shard, after, at, fromId, toId);
+            }
+        };
+    }
+
+    // Checkpoints every account with entries in (last cut, new cut], one range per transaction. A run that fails
+    // part-way publishes no cut, so the next one covers the whole interval again.
+    @Scheduled(fixedDelayString = "${app.ledger.checkpoint-interval-ms:60000}")
+    public void checkpoint() {
+        long cut = System.currentTimeMillis() - commitLagMillis;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            int target = shard;
+            Long lastCut = shards.inTransaction(shard, () -> ledgerCutRepository.findLastCut(Long.MAX_VALUE));
+            long after = lastCut == null ? Long.MIN_VALUE : lastCut;
+            if (cut <= after) {
+                continue;
+            }
+            Object[] bounds = shards.inTransaction(shard, () -> ledgerEntryRepository.accountBoundsBetween(after, cut).get(0));
+            if (bounds[0] != null) {
+                inRanges((Long) bounds[0], (Long) bounds[1], (fromId, toId) -> shards.inTransaction(target, () -> {
+                    Map<Long, Long> previous = new TreeMap<>();
+                    balanceCheckpointRepository.findLatestByAccountBetween(fromId, toId, after)
+                            .forEach(row -> previous.put((Long) row[0], (Long) row[1]));
+                    List<Object[]> sums = ledgerEntryRepository.sumByAccountBetween(fromId, toId, after, cut);
+                    for (int i = 0; i < sums.size(); i++) {
+                        Long accountId = (Long) sums.get(i)[0];
+                        long balance = previous.getOrDefault(accountId, 0L) + ((Number) sums.get(i)[1]).longValue();
+                        entityManager.persist(new BalanceCheckpoint(null, accountId, cut, balance));
+                        if ((i + 1) % BATCH_SIZE == 0) {
+                            entityManager.flush();
+                            entityManager.clear();
+                        }
+                    }
+                    return sums.size();
+                }), written -> { });
+            }
+            shards.inTransaction(target, () -> {
+                entityManager.persist(new LedgerCut(cut));
+                return null;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // One update per transaction moves its entries to the commit time, so none can land behind a published cut.
+    private void stampAtCommit(Long entryId) {
+        @SuppressWarnings("unchecked")
+        List<Long> pending = (List<Long>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<Long> ids = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, ids);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    long now = System.currentTimeMillis();
+                    for (int i = 0; i < ids.size(); i += BATCH_SIZE) {
+                        ledgerEntryRepository.stamp(ids.subList(i, Math.min(ids.size(), i + BATCH_SIZE)), now);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(Ledger.this);
+                }
+            });
+            pending = ids;
+        }
+        pending.add(entryId);
+    }
+
+    // Every account with entries before the last published cut has a checkpoint at or after its last such entry.
+    private long lastCut(int shard, long at) {
+        Long lastCut = shards.readOnly(shard, () -> ledgerCutRepository.findLastCut(at));
+        return lastCut == null ? Long.MIN_VALUE : lastCut;
+    }
+
+    // Balances at {@code at} of the accounts in [fromId, toId] on the shard, in id order.
+    private Map<Long, BigDecimal> readRange(int shard, long after, long at, long fromId, long toId) {
+        return shards.readOnly(shard, () -> {
+            Map<Long, Long> balances = new TreeMap<>();
+            balanceCheckpointRepository.findLatestByAccountBetween(fromId, toId, after)
+                    .forEach(row -> balances.put((Long) row[0], (Long) row[1]));
+            ledgerEntryRepository.sumByAccountBetween(fromId, toId, after, at)
+                    .forEach(row -> balances.merge((Long) row[0], ((Number) row[1]).longValue(), Long::sum));
+            Map<Long, BigDecimal> range = new LinkedHashMap<>();
+            balances.forEach((id, balance) -> range.put(id, Money.fromMinorUnits(balance)));
+            return range;
+        });
+    }
+
+    private <T> void inRanges(long minId, long maxId, BiFunction<Long, Long, T> task, Consumer<T> sink) {
+        Deque<Future<T>> inFlight = new ArrayDeque<>();
+        long next = minId;
+        boolean more = true;
+        try {
+            while (more || !inFlight.isEmpty()) {
+                while (more && inFlight.size() < parallelism) {
+                    long fromId = next;
+                    long toId = maxId - fromId < rangeSize ? maxId : fromId + rangeSize - 1;
+                    inFlight.add(executor.submit(() -> task.apply(fromId, toId)));
+                    more = toId < maxId;
+                    next = toId + 1;
+                }
+                sink.accept(inFlight.removeFirst().get());
+            }
+        } catch (InterruptedException e) {
+            inFlight.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the ledger", e);
+        } catch (ExecutionException e) {
+            inFlight.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
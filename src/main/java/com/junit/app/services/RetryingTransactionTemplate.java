@@ -0,0 +1,62 @@
+package com.junit.app.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs work in its own transaction and retries it with exponential backoff when a row lock
+ * cannot be acquired. When a transaction is already active the work joins it and is not retried,
+ * since the outer transaction is rolled back anyway.
+ */
+@Component
+public class RetryingTransactionTemplate {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final Counter retries;
+
+    public RetryingTransactionTemplate(TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                                       @Value("${app.transfers.lock-retries:5}") int maxAttempts,
+                                       @Value("${app.transfers.lock-retry-backoff-ms:10}") long backoffMillis) {
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.retries = meterRegistry.counter("transfers.lock.retries");
+    }
+
+    public <T> T execute(Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                retries.increment();
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    private void backoff(int attempt, RuntimeException cause) {
+        long delay = (backoffMillis << (attempt - 1)) + ThreadLocalRandom.current().nextLong(backoffMillis + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.junit.app.services;
+
+import com.junit.app.models.Money;
+import com.junit.app.models.ScheduledTransfer;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
+import com.junit.app.repositories.ScheduledTransferRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Future-dated transfers such as payroll and standing orders. Every one is a row in
+ * scheduled_transfers, and those due within {@code app.transfers.scheduled.horizon-ms} are also held
+ * in a {@link TimingWheel}, so the table is read once per half horizon by a range scan of its
+ * (state, due_at) index instead of being polled. A timer thread turns the wheel every tick and hands
+ * what fell due to the executors in batches of {@code app.transfers.scheduled.batch-size}, each
+ * applied through {@link AccountService#transferAll}. The first load at startup also finds everything
+ * that fell due while the service was down and sends it straight to the executors in due order.
+ * A transfer is claimed (PENDING to RUNNING) before it is applied, so it is never applied twice. The
+ * claim names this instance and holds for {@code app.transfers.scheduled.lease-ms}; every load marks
+ * the claims whose lease ran out as FAILED for review, as their instance died part way, while live
+ * claims of other instances are left alone. A batch that fails as a whole is settled by
+ * {@link TransferBatches}: on one shard each transfer is tried again on its own and only one that
+ * still fails is FAILED; across shards the batch is FAILED as interrupted.
+ */
+@Service
+@Slf4j
+public class ScheduledTransfers {
+    private final ScheduledTransferRepository repository;
+    private final AccountService accountService;
+    private final Shards shards;
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long horizonMillis;
+    private final int batchSize;
+    private final long retryMillis;
+    private final long leaseMillis;
+    private final String owner = UUID.randomUUID().toString();
+    private final Timer lag;
+    private final Counter done;
+    private final Counter failed;
+    private final ScheduledExecutorService timer;
+    private final ScheduledExecutorService loader;
+    private final ExecutorService executors;
+    private TimingWheel<Long> wheel;
+    // Transfers due before this are in the wheel or already handed out; later ones are picked up by the next load.
+    private volatile long loadedUntil;
+
+    public ScheduledTransfers(ScheduledTransferRepository repository, AccountService accountService, Shards shards,
+                              MeterRegistry registry,
+                              @Value("${app.transfers.scheduled.tick-ms:10}") long tickMillis,
+                              @Value("${app.transfers.scheduled.wheel-size:512}") int wheelSize,
+                              @Value("${app.transfers.scheduled.horizon-ms:3600000}") long horizonMillis,
+                              @Value("${app.transfers.scheduled.batch-size:500}") int batchSize,
+                              @Value("${app.transfers.scheduled.retry-ms:1000}") long retryMillis,
+                              @Value("${app.transfers.scheduled.lease-ms:600000}") long leaseMillis,
+                              @Value("${app.transfers.scheduled.threads:2}") int threads) {
+        this.repository = repository;
+        this.accountService = accountService;
+        this.shards = shards;
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.horizonMillis = horizonMillis;
+        this.batchSize = batchSize;
+        this.retryMillis = retryMillis;
+        this.leaseMillis = leaseMillis;
+        this.lag = Timer.builder("transfers.scheduled.lag")
+                .description("Time from a scheduled transfer's due time to the start of its execution")
+                .register(registry);
+        this.done = Counter.builder("transfers.scheduled").tag("outcome", "done").register(registry);
+        this.failed = Counter.builder("transfers.scheduled").tag("outcome", "failed").register(registry);
+        registry.gauge("transfers.scheduled.wheel", this, ScheduledTransfers::wheelSize);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> thread(runnable, "scheduled-transfers-timer"));
+        this.loader = Executors.newSingleThreadScheduledExecutor(runnable -> thread(runnable, "scheduled-transfers-loader"));
+        this.executors = Executors.newFixedThreadPool(threads, runnable -> thread(runnable, "scheduled-transfers"));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (wheel != null) {
+            return;
+        }
+        wheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+        timer.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        loader.scheduleWithFixedDelay(this::load, 0, Math.max(1, horizonMillis / 2), TimeUnit.MILLISECONDS);
+    }
+
+    public ScheduledTransfer schedule(TransactionDTO transaction, Instant dueAt) {
+        Money.toTransferAmount(transaction.getAmount());
+        if (transaction.getOriginAccountId() == null || transaction.getDestinationAccountId() == null
+                || transaction.getBankId() == null || dueAt == null) {
+            throw new IllegalArgumentException("Origin, destination, bank and due time are required");
+        }
+        return shards.inTransaction(0, () -> {
+            ScheduledTransfer scheduled = repository.save(new ScheduledTransfer(null, transaction.getOriginAccountId(),
+                    transaction.getDestinationAccountId(), transaction.getBankId(), transaction.getAmount(), dueAt,
+                    ScheduledTransfer.State.PENDING, null, null, null, null));
+            TransactionHooks.afterCommit(() -> {
+                // Read after commit: a load that has not moved loadedUntil past dueAt yet will see the row itself.
+                if (dueAt.toEpochMilli() < loadedUntil) {
+                    enqueue(scheduled.getId(), dueAt.toEpochMilli());
+                }
+            });
+            return scheduled;
+        });
+    }
+
+    public Optional<ScheduledTransfer> find(Long id) {
+        return repository.findById(id);
+    }
+
+    // False when the transfer is unknown or no longer pending; a cancelled one is skipped when its timer fires.
+    public boolean cancel(Long id) {
+        return shards.inTransaction(0, () ->
+                repository.transition(id, ScheduledTransfer.State.PENDING, ScheduledTransfer.State.CANCELLED) == 1);
+    }
+
+    @PreDestroy
+    public void close() {
+        timer.shutdownNow();
+        loader.shutdownNow();
+        executors.shutdown();
+        try {
+            executors.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Streams the next stretch of the table into the wheel; anything already due goes out in batches as it is read.
+    private void load() {
+        failExpired();
+        long from = loadedUntil;
+        try {
+            long until = System.currentTimeMillis() + horizonMillis;
+            loadedUntil = until;
+            shards.inTransaction(0, () -> {
+                List<Long> overdue = new ArrayList<>(batchSize);
+                try (Stream<Object[]> rows = repository.streamDue(ScheduledTransfer.State.PENDING,
+                        Instant.ofEpochMilli(from), Instant.ofEpochMilli(until))) {
+                    rows.forEach(row -> {
+                        Long id = (Long) row[0];
+                        boolean queued;
+                        synchronized (this) {
+                            queued = wheel.add(((Instant) row[1]).toEpochMilli(), id);
+                        }
+                        if (!queued) {
+                            overdue.add(id);
+                            if (overdue.size() == batchSize) {
+                                dispatch(new ArrayList<>(overdue));
+                                overdue.clear();
+                            }
+                        }
+                    });
+                }
+                if (!overdue.isEmpty()) {
+                    dispatch(overdue);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // Rows already queued are claimed at most once, so reading the stretch again is harmless.
+            loadedUntil = from;
+            log.error("Could not load scheduled transfers", e);
+        }
+    }
+
+    private void failExpired() {
+        try {
+            int interrupted = shards.inTransaction(0, () -> repository.failExpired(Instant.now(), TransferBatches.INTERRUPTED));
+            if (interrupted > 0) {
+                log.warn("Marked {} scheduled transfers whose claim expired before completion as FAILED", interrupted);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not check for expired scheduled transfer claims", e);
+        }
+    }
+
+    private void tick() {
+        try {
+            List<Long> due = new ArrayList<>();
+            synchronized (this) {
+                wheel.advance(System.currentTimeMillis(), due::add);
+            }
+            for (int i = 0; i < due.size(); i += batchSize) {
+                dispatch(new ArrayList<>(due.subList(i, Math.min(due.size(), i + batchSize))));
+            }
+        } catch (RuntimeException e) {
+            log.error("Scheduled transfer timer failed", e);
+        }
+    }
+
+    private void enqueue(Long id, long dueMillis) {
+        boolean queued;
+        synchronized (this) {
+            queued = wheel.add(dueMillis, id);
+        }
+        if (!queued) {
+            dispatch(List.of(id));
+        }
+    }
+
+    private void dispatch(List<Long> ids) {
+        executors.execute(() -> fire(ids));
+    }
+
+    private void fire(List<Long> ids) {
+        List<ScheduledTransfer> claimed;
+        try {
+            Instant leasedUntil = Instant.now().plusMillis(leaseMillis);
+            claimed = shards.inTransaction(0, () -> {
+                List<Long> won = ids.stream()
+                        .filter(id -> repository.claim(id, owner, leasedUntil) == 1)
+                        .collect(Collectors.toList());
+                return won.isEmpty() ? List.<ScheduledTransfer>of() : repository.findAllById(won);
+            });
+        } catch (RuntimeException e) {
+            // Nothing was claimed, so the whole batch can safely go round again.
+            log.warn("Could not claim {} scheduled transfers, retrying in {}ms", ids.size(), retryMillis, e);
+            long retryAt = System.currentTimeMillis() + retryMillis;
+            ids.forEach(id -> enqueue(id, retryAt));
+            return;
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        List<ScheduledTransfer> batch = claimed.stream()
+                .sorted(Comparator.comparing(ScheduledTransfer::getDueAt).thenComparing(ScheduledTransfer::getId))
+                .collect(Collectors.toList());
+        long started = System.currentTimeMillis();
+        batch.forEach(transfer -> lag.record(Math.max(0, started - transfer.getDueAt().toEpochMilli()), TimeUnit.MILLISECONDS));
+
+        List<TransferResult> results = TransferBatches.settle(accountService, shards,
+                batch.stream().map(ScheduledTransfer::toTransaction).collect(Collectors.toList()));
+        Instant executedAt = Instant.now();
+        try {
+            int succeeded = shards.inTransaction(0, () -> {
+                int ok = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    TransferResult result = results.get(i);
+                    boolean applied = "OK".equals(result.getStatus());
+                    repository.finish(batch.get(i).getId(), applied ? ScheduledTransfer.State.DONE : ScheduledTransfer.State.FAILED,
+                            executedAt, result.getMessage());
+                    ok += applied ? 1 : 0;
+                }
+                return ok;
+            });
+            done.increment(succeeded);
+            failed.increment(batch.size() - succeeded);
+        } catch (RuntimeException e) {
+            log.error("Could not record the outcome of scheduled transfers {}",
+                    batch.stream().map(ScheduledTransfer::getId).collect(Collectors.toList()), e);
+        }
+    }
+
+    private synchronized int wheelSize() {
+        return wheel == null ? 0 : wheel.size();
+    }
+
+    private static Thread thread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
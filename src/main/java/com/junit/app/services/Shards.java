@@ -0,0 +1,156 @@
+package com.junit.app.services;
+
+import com.junit.app.ShardConfig;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Horizontal partitioning of accounts across the primary DataSource (shard 0) and the databases
+ * listed under {@code app.datasource.shards[n]}. Account ids are handed out in blocks of
+ * {@link #BLOCK_SIZE} from a per-shard sequence, and block b lives on shard b mod count, so an id
+ * alone names its shard. Work runs on a shard by binding it to the thread before the transaction
+ * starts; with no shards configured every call runs inline on shard 0.
+ */
+@Component
+public class Shards {
+    // The increment_size of accounts_seq: one pooled-lo allocation is one block.
+    public static final int BLOCK_SIZE = 50;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final int count;
+    private final TransactionTemplate writeTemplate;
+    private final TransactionTemplate readOnlyTemplate;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ExecutorService executor;
+
+    public Shards(Environment environment, PlatformTransactionManager transactionManager) {
+        this.count = count(environment);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.executor = count > 1 ? Executors.newFixedThreadPool(count, runnable -> {
+            Thread thread = new Thread(runnable, "shard-gather");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    // The primary plus the configured shards; read before the Shards bean exists while Hibernate boots.
+    public static int count(Environment environment) {
+        return 1 + Binder.get(environment)
+                .bind("app.datasource.shards", Bindable.listOf(ShardConfig.Shard.class))
+                .orElse(Collections.emptyList())
+                .size();
+    }
+
+    // The shard bound to this thread; connections taken now come from its database.
+    public static int current() {
+        Integer shard = CURRENT.get();
+        return shard == null ? 0 : shard;
+    }
+
+    // Binds a shard for the duration of work, for callers that run before the Shards bean exists.
+    public static <T> T on(int shard, Supplier<T> work) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int shardOf(Long accountId) {
+        return count == 1 ? 0 : (int) Math.floorMod(Math.floorDiv(accountId - 1, BLOCK_SIZE), (long) count);
+    }
+
+    // Round-robin placement for new accounts; their ids then come from the chosen shard's sequence.
+    public int nextShard() {
+        return count == 1 ? 0 : Math.floorMod(next.getAndIncrement(), count);
+    }
+
+    public <T> T call(int shard, Supplier<T> work) {
+        if (count == 1) {
+            return work.get();
+        }
+        if (shard != current() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Cannot switch to shard " + shard + " inside a transaction on shard " + current());
+        }
+        return on(shard, work);
+    }
+
+    public void run(int shard, Runnable work) {
+        call(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public <T> T inTransaction(int shard, Supplier<T> work) {
+        return call(shard, () -> writeTemplate.execute(status -> work.get()));
+    }
+
+    public <T> T readOnly(int shard, Supplier<T> work) {
+        return call(shard, () -> readOnlyTemplate.execute(status -> work.get()));
+    }
+
+    // Scatter-gather: runs work on every shard in parallel and returns the results in shard order.
+    public <T> List<T> gather(IntFunction<T> work) {
+        if (count == 1) {
+            return Collections.singletonList(work.apply(0));
+        }
+        List<Future<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            futures.add(executor.submit(() -> on(target, () -> work.apply(target))));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while gathering from shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.junit.app.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Level 0 has {@code wheelSize} slots of {@code tickMillis}; each level
+ * above has slots as wide as the whole level below, and levels are added as far-off timers need them.
+ * A timer goes into the finest level that spans its due time and moves down a level each time its
+ * slot comes round, so adding and expiring cost O(1) per timer however many are pending. A timer
+ * expires once the tick holding its due time has fully passed. Not thread-safe; callers synchronize.
+ */
+public final class TimingWheel<T> {
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<Level<T>> levels = new ArrayList<>();
+    private long currentTime;
+    private int size;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("Tick must be positive and the wheel must have at least 2 slots");
+        }
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTime = Math.floorDiv(startMillis, tickMillis) * tickMillis;
+        levels.add(new Level<>(tickMillis, wheelSize));
+    }
+
+    // Start of the tick the wheel is in; timers due before it have already expired.
+    public long currentTime() {
+        return currentTime;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns false, and keeps nothing, when the timer is already due; the caller fires it right away.
+    public boolean add(long dueMillis, T item) {
+        if (dueMillis < currentTime) {
+            return false;
+        }
+        place(dueMillis, item);
+        size++;
+        return true;
+    }
+
+    // Turns the wheel up to now, handing every timer whose tick has passed to expired in due order by tick.
+    public void advance(long nowMillis, Consumer<T> expired) {
+        while (currentTime + tickMillis <= nowMillis) {
+            if (size == 0) {
+                currentTime = Math.floorDiv(nowMillis, tickMillis) * tickMillis;
+                return;
+            }
+            List<Timer<T>> due = levels.get(0).take(currentTime);
+            if (due != null) {
+                size -= due.size();
+                due.forEach(timer -> expired.accept(timer.item));
+            }
+            currentTime += tickMillis;
+            for (int i = 1; i < levels.size(); i++) {
+                Level<T> level = levels.get(i);
+                if (Math.floorMod(currentTime, level.slotMillis) != 0) {
+                    break;
+                }
+                List<Timer<T>> cascaded = level.take(currentTime);
+                if (cascaded != null) {
+                    cascaded.forEach(timer -> place(timer.dueMillis, timer.item));
+                }
+            }
+        }
+    }
+
+    private void place(long dueMillis, T item) {
+        for (int i = 0; ; i++) {
+            if (i == levels.size()) {
+                levels.add(new Level<>(Math.multiplyExact(levels.get(i - 1).slotMillis, (long) wheelSize), wheelSize));
+            }
+            Level<T> level = levels.get(i);
+            // Level 0's span starts at the current tick, so a higher level never gets a timer in its current slot.
+            long levelStart = Math.floorDiv(currentTime, level.slotMillis) * level.slotMillis;
+            if (dueMillis - levelStart < level.slotMillis * wheelSize) {
+                level.add(dueMillis, new Timer<>(dueMillis, item));
+                return;
+            }
+        }
+    }
+
+    private static final class Level<T> {
+        private final long slotMillis;
+        private final List<Timer<T>>[] slots;
+
+        @SuppressWarnings("unchecked")
+        private Level(long slotMillis, int wheelSize) {
+            this.slotMillis = slotMillis;
+            this.slots = new List[wheelSize];
+        }
+
+        private void add(long dueMillis, Timer<T> timer) {
+            int slot = slot(dueMillis);
+            if (slots[slot] == null) {
+                slots[slot] = new ArrayList<>();
+            }
+            slots[slot].add(timer);
+        }
+
+        private List<Timer<T>> take(long time) {
+            int slot = slot(time);
+            List<Timer<T>> timers = slots[slot];
+            slots[slot] = null;
+            return timers;
+        }
+
+        private int slot(long time) {
+            return (int) Math.floorMod(Math.floorDiv(time, slotMillis), (long) slots.length);
+        }
+    }
+
+    private static final class Timer<T> {
+        private final long dueMillis;
+        private final T item;
+
+        private Timer(long dueMillis, T item) {
+            this.dueMillis = dueMillis;
+            this.item = item;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.junit.app.services;
+
+import com.junit.app.models.Money;
+import com.junit.app.repositories.AccountRepository;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * Account balances ordered largest first, loaded once at startup and kept in step with this
+ * instance's commits, so the top of the list is read without a query or a sort. Changes to known
+ * accounts are applied as deltas, which give the same result whatever order their after-commit
+ * hooks run in; only new accounts arrive as absolute balances. Loads after the journal has
+ * restored balances.
+ */
+@Component
+@DependsOn("journalService")
+public class TopBalances {
+    private final AccountRepository accountRepository;
+    private final Shards shards;
+    private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+    private final Map<Long, Entry> entriesById = new ConcurrentHashMap<>();
+
+    public TopBalances(AccountRepository accountRepository, Shards shards) {
+        this.accountRepository = accountRepository;
+        this.shards = shards;
+    }
+
+    @PostConstruct
+    public void load() {
+        shards.gather(shard -> shards.inTransaction(shard, () -> {
+            try (Stream<Object[]> rows = accountRepository.streamBalances()) {
+                rows.forEach(row -> put((Long) row[0], (BigDecimal) row[1]));
+            }
+            return null;
+        }));
+    }
+
+    public void put(Long id, BigDecimal balance) {
+        if (balance == null) {
+            remove(id);
+        } else {
+            put(id, Money.toMinorUnits(balance));
+        }
+    }
+
+    // Writers for one account are serialized by the id map's per-key compute, so writers for different accounts
+    // never wait on each other. The new entry goes into the set before the old one leaves; top() skips the copy.
+    public void put(Long id, long balance) {
+        entriesById.compute(id, (key, previous) -> replace(previous, new Entry(id, balance)));
+    }
+
+    // A delta for an account this instance has never seen is dropped; a restart brings it in.
+    public void add(Long id, long delta) {
+        if (delta != 0) {
+            entriesById.computeIfPresent(id, (key, previous) -> replace(previous, new Entry(id, previous.balance + delta)));
+        }
+    }
+
+    public void remove(Long id) {
+        entriesById.computeIfPresent(id, (key, previous) -> {
+            entries.remove(previous);
+            return null;
+        });
+    }
+
+    private Entry replace(Entry previous, Entry entry) {
+        entries.add(entry);
+        if (previous != null && !previous.equals(entry)) {
+            entries.remove(previous);
+        }
+        return entry;
+    }
+
+    // Ids and balances of the n largest accounts, largest first and by id among equal balances.
+    public List<Map.Entry<Long, BigDecimal>> top(int n) {
+        List<Map.Entry<Long, BigDecimal>> top = new ArrayList<>(Math.min(n, 64));
+        Set<Long> seen = new HashSet<>();
+        Iterator<Entry> iterator = entries.iterator();
+        while (top.size() < n && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (seen.add(entry.id)) {
+                top.add(Map.entry(entry.id, Money.fromMinorUnits(entry.balance)));
+            }
+        }
+        return top;
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        private final long id;
+        private final long balance;
+
+        private Entry(long id, long balance) {
+            this.id = id;
+            this.balance = balance;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byBalance = Long.compare(other.balance, balance);
+            return byBalance != 0 ? byBalance : Long.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Entry && ((Entry) o).id == id && ((Entry) o).balance == balance;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(id) * 31 + Long.hashCode(balance);
+        }
+    }
+}
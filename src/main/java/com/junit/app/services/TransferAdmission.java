@@ -0,0 +1,177 @@
+package com.junit.app.services;
+
+import com.junit.app.exceptions.TransferOverloaded;
+import com.junit.app.exceptions.TransferRateLimited;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Admission control for transfers, checked before a transaction or connection is taken, or before a
+ * transfer joins a batch or the queue. Token buckets per origin account and per bank reject bursts
+ * with TransferRateLimited; a global concurrency cap, enforced only while the recent p99 latency is
+ * over its threshold, sheds load with TransferOverloaded. Every check is a CAS on a long, so
+ * admission never blocks.
+ */
+@Component
+public class TransferAdmission {
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final Environment environment;
+    private final boolean enabled;
+    private final double accountRate;
+    private final double accountBurst;
+    private final double bankRate;
+    private final double bankBurst;
+    private final int maxConcurrency;
+    private final long p99ThresholdNanos;
+    private final Map<Long, TokenBucket> accounts = new ConcurrentHashMap<>();
+    private final Map<Long, TokenBucket> banks = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+    private final AtomicLong samples = new AtomicLong();
+    private final Counter rateLimited;
+    private final Counter shed;
+    private volatile long p99Nanos;
+
+    public TransferAdmission(Environment environment, MeterRegistry registry,
+                             @Value("${app.transfers.rate-limit.enabled:true}") boolean enabled,
+                             @Value("${app.transfers.rate-limit.account.per-second:50}") double accountRate,
+                             @Value("${app.transfers.rate-limit.account.burst:100}") double accountBurst,
+                             @Value("${app.transfers.rate-limit.bank.per-second:0}") double bankRate,
+                             @Value("${app.transfers.rate-limit.bank.burst:0}") double bankBurst,
+                             @Value("${app.transfers.shedding.max-concurrency:64}") int maxConcurrency,
+                             @Value("${app.transfers.shedding.p99-threshold-ms:500}") long p99ThresholdMillis) {
+        this.environment = environment;
+        this.enabled = enabled;
+        this.accountRate = accountRate;
+        this.accountBurst = accountBurst;
+        this.bankRate = bankRate;
+        this.bankBurst = bankBurst;
+        this.maxConcurrency = maxConcurrency;
+        this.p99ThresholdNanos = TimeUnit.MILLISECONDS.toNanos(p99ThresholdMillis);
+        this.rateLimited = Counter.builder("transfers.admission.rejected").tag("reason", "rate_limited").register(registry);
+        this.shed = Counter.builder("transfers.admission.rejected").tag("reason", "overloaded").register(registry);
+        registry.gauge("transfers.admission.p99", this, admission -> admission.p99Nanos / 1e9);
+    }
+
+    // Runs the transfer if both buckets have a token and the service is not shedding load.
+    public void run(Long originAccountId, Long bankId, Runnable transfer) {
+        if (!enabled) {
+            transfer.run();
+            return;
+        }
+        admit(originAccountId, bankId);
+        int running = inFlight.incrementAndGet();
+        try {
+            if (running > maxConcurrency && p99Nanos > p99ThresholdNanos) {
+                shed.increment();
+                throw new TransferOverloaded("Transfer service is overloaded");
+            }
+            long start = System.nanoTime();
+            try {
+                transfer.run();
+            } finally {
+                latencies.set((int) (samples.getAndIncrement() % LATENCY_SAMPLES), System.nanoTime() - start);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    // Takes a token from both buckets for a transfer that is batched or queued rather than run here.
+    public void admit(Long originAccountId, Long bankId) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (originAccountId != null) {
+            acquire(accounts.computeIfAbsent(originAccountId, id -> bucket(accountRate, accountBurst)), now,
+                    "account " + originAccountId);
+        }
+        if (bankId != null) {
+            acquire(banks.computeIfAbsent(bankId, this::bankBucket), now, "bank " + bankId);
+        }
+    }
+
+    // The p99 is recomputed off the request path from the most recent samples.
+    @Scheduled(fixedDelayString = "${app.transfers.shedding.refresh-interval-ms:1000}")
+    public void refresh() {
+        int count = (int) Math.min(samples.get(), LATENCY_SAMPLES);
+        if (count == 0) {
+            return;
+        }
+        long[] recent = new long[count];
+        for (int i = 0; i < count; i++) {
+            recent[i] = latencies.get(i);
+        }
+        Arrays.sort(recent);
+        p99Nanos = recent[(int) Math.ceil(0.99 * count) - 1];
+    }
+
+    private void acquire(TokenBucket bucket, long now, String subject) {
+        long waitNanos = bucket.tryAcquire(now);
+        if (waitNanos > 0) {
+            rateLimited.increment();
+            throw new TransferRateLimited("Too many transfers for " + subject,
+                    Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+        }
+    }
+
+    // Banks can override the defaults with app.transfers.rate-limit.banks.<id>.per-second and .burst.
+    private TokenBucket bankBucket(Long bankId) {
+        String prefix = "app.transfers.rate-limit.banks." + bankId + ".";
+        return bucket(environment.getProperty(prefix + "per-second", Double.class, bankRate),
+                environment.getProperty(prefix + "burst", Double.class, bankBurst));
+    }
+
+    private static TokenBucket bucket(double rate, double burst) {
+        return rate > 0 ? new TokenBucket(rate, Math.max(1, burst)) : TokenBucket.UNLIMITED;
+    }
+
+    /**
+     * A token bucket in its GCRA form: the whole state is the theoretical arrival time of the next
+     * request, so taking a token is one compare-and-set.
+     */
+    static final class TokenBucket {
+        static final TokenBucket UNLIMITED = new TokenBucket(0, 0);
+
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+        TokenBucket(double rate, double burst) {
+            this.intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+            this.toleranceNanos = (long) (intervalNanos * (burst - 1));
+        }
+
+        // Returns 0 when a token was taken, otherwise how long until the next one is available.
+        long tryAcquire(long now) {
+            if (intervalNanos == 0) {
+                return 0;
+            }
+            while (true) {
+                long tat = theoreticalArrival.get();
+                long next = Math.max(tat, now) + intervalNanos;
+                long wait = next - now - intervalNanos - toleranceNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(tat, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.junit.app.services;
+
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Applies a batch through {@link AccountService#transferAll} for the background paths and decides
+ * what a failure of the whole call means. A batch on one shard runs in one transaction, so a failure
+ * rolled all of it back: each transfer is then tried on its own, and one that still fails was not
+ * applied. A batch across shards commits transfer by transfer, so after a failure some may have
+ * applied; those are reported as {@link TransferResult#INTERRUPTED} rather than as failed.
+ */
+@Slf4j
+final class TransferBatches {
+    static final String INTERRUPTED = "Interrupted before completion; check the account history";
+    static final String FAILED = "Transfer failed";
+
+    private TransferBatches() {
+    }
+
+    static List<TransferResult> settle(AccountService accountService, Shards shards, List<TransactionDTO> batch) {
+        try {
+            return accountService.transferAll(batch);
+        } catch (RuntimeException e) {
+            if (!singleShard(shards, batch)) {
+                log.error("Transfer batch of {} across shards failed", batch.size(), e);
+                return batch.stream()
+                        .map(transaction -> new TransferResult(transaction, TransferResult.INTERRUPTED, INTERRUPTED))
+                        .collect(Collectors.toList());
+            }
+            log.warn("Transfer batch of {} rolled back, applying its transfers one by one", batch.size(), e);
+            return batch.stream().map(transaction -> alone(accountService, transaction)).collect(Collectors.toList());
+        }
+    }
+
+    private static TransferResult alone(AccountService accountService, TransactionDTO transaction) {
+        try {
+            return accountService.transferAll(List.of(transaction)).get(0);
+        } catch (RuntimeException e) {
+            log.error("Transfer {} failed", transaction, e);
+            return new TransferResult(transaction, "ERROR", FAILED);
+        }
+    }
+
+    private static boolean singleShard(Shards shards, List<TransactionDTO> batch) {
+        return batch.stream()
+                .flatMap(transaction -> Stream.of(transaction.getOriginAccountId(), transaction.getDestinationAccountId()))
+                .filter(Objects::nonNull)
+                .map(shards::shardOf)
+                .distinct()
+                .count() <= 1;
+    }
+}
@@ -0,0 +1,58 @@
+package com.junit.app.services;
+
+import com.junit.app.models.TransferCounter;
+import com.junit.app.repositories.TransferCounterRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Counts transfers per bank without touching the banks row. Increments land in a LongAdder
+ * and are flushed periodically into one of several counter stripes, so neither the JVM nor
+ * the database serializes transfers on a single counter.
+ */
+@Service
+public class TransferCounterService {
+
+    private final TransferCounterRepository transferCounterRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int stripes;
+    private final BufferedCounters<Long> counters = new BufferedCounters<>();
+
+    public TransferCounterService(TransferCounterRepository transferCounterRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${app.transfers.counter.stripes:8}") int stripes) {
+        this.transferCounterRepository = transferCounterRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.stripes = stripes;
+    }
+
+    public void increment(Long bankId) {
+        add(bankId, 1);
+    }
+
+    public void add(Long bankId, long transfers) {
+        counters.add(bankId, transfers);
+    }
+
+    public long count(Long bankId) {
+        return counters.read(bankId, transferCounterRepository::sumByBankId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.transfers.counter.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        counters.flush(write -> transactionTemplate.executeWithoutResult(status -> write.run()), this::flush);
+    }
+
+    private void flush(Long bankId, long delta) {
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        if (transferCounterRepository.increment(bankId, stripe, delta) == 0) {
+            transferCounterRepository.save(new TransferCounter(null, bankId, stripe, delta));
+        }
+    }
+}
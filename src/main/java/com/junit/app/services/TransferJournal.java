@@ -0,0 +1,331 @@
+package com.junit.app.services;
+
+import com.junit.app.models.JournalEntry;
+import com.junit.app.models.Money;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of balance changes, written sequentially into fixed-size memory-mapped
+ * segments, plus the balance projection it defines. Each record is 56 bytes: sequence, timestamp,
+ * type, four long operands and a CRC32 of the rest. Snapshots of the projection only shorten replay;
+ * segments are never deleted, so the journal is a complete audit trail.
+ */
+public class TransferJournal implements Closeable {
+    public static final int TRANSFER = 1;
+    public static final int BALANCE = 2;
+    public static final int CLOSE = 3;
+    public static final int ADJUST = 4;
+
+    static final int RECORD_BYTES = 56;
+    private static final int CHECKED_BYTES = RECORD_BYTES - Integer.BYTES;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final NavigableMap<Long, Path> segments = new TreeMap<>();
+    // Account id to balance in minor units.
+    private final Map<Long, Long> balances = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long nextSequence = 1;
+    private boolean dirty;
+
+    public TransferJournal(Path directory, int segmentBytes) {
+        this.directory = directory;
+        this.segmentBytes = Math.max(1, segmentBytes / RECORD_BYTES) * RECORD_BYTES;
+    }
+
+    /**
+     * Rebuilds the projection from the latest snapshot plus the records after it. A new journal
+     * starts from {@code initialBalances}, which is snapshotted straight away.
+     */
+    public synchronized void open(Supplier<Map<Long, Long>> initialBalances) throws IOException {
+        Files.createDirectories(directory);
+        long snapshotSequence = readLatestSnapshot();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .forEach(file -> segments.put(segmentStart(file), file));
+        }
+        if (snapshotSequence < 0 && segments.isEmpty()) {
+            balances.putAll(initialBalances.get());
+            writeSnapshot(0, new HashMap<>(balances));
+        }
+        nextSequence = segments.isEmpty() ? Math.max(0, snapshotSequence) + 1 : segments.firstKey();
+
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            boolean last = segment.getKey().equals(segments.lastKey());
+            ByteBuffer records = map(segment.getValue(), FileChannel.MapMode.READ_ONLY);
+            while (records.remaining() >= RECORD_BYTES) {
+                int start = records.position();
+                long sequence = records.getLong(start);
+                if (sequence == 0 || sequence != nextSequence || !checksumMatches(records, start)) {
+                    if (!last && sequence != 0) {
+                        throw new IOException("Corrupt journal record " + nextSequence + " in " + segment.getValue());
+                    }
+                    break;
+                }
+                if (sequence > snapshotSequence) {
+                    apply(records.getInt(start + 16), records.getLong(start + 20), records.getLong(start + 28),
+                            records.getLong(start + 44));
+                }
+                nextSequence++;
+                records.position(start + RECORD_BYTES);
+            }
+        }
+
+        if (segments.isEmpty()) {
+            roll();
+        } else {
+            Path last = segments.lastEntry().getValue();
+            channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.position(Math.toIntExact((nextSequence - segments.lastKey()) * RECORD_BYTES));
+            // Clears a torn record left by a crash, so the next open stops at the same place.
+            for (int i = buffer.position(); i < Math.min(buffer.limit(), buffer.position() + RECORD_BYTES); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+    }
+
+    public synchronized long appendTransfer(Long originAccountId, Long destinationAccountId, Long bankId, long amount) {
+        return append(TRANSFER, originAccountId, destinationAccountId, bankId, amount);
+    }
+
+    // A change to one account's balance outside a transfer; deltas replay to the same result in any order.
+    public synchronized long appendAdjustment(Long accountId, long delta) {
+        return append(ADJUST, accountId, 0, 0, delta);
+    }
+
+    public synchronized long appendClose(Long accountId) {
+        return append(CLOSE, accountId, 0, 0, 0);
+    }
+
+    public synchronized Map<Long, Long> balances() {
+        return new HashMap<>(balances);
+    }
+
+    public synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    // Flushes appended records to disk; records appended since the last call are lost on a crash.
+    public synchronized void force() {
+        if (dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    public void snapshot() throws IOException {
+        long sequence;
+        Map<Long, Long> copy;
+        synchronized (this) {
+            force();
+            sequence = lastSequence();
+            copy = new HashMap<>(balances);
+        }
+        writeSnapshot(sequence, copy);
+    }
+
+    public synchronized List<JournalEntry> read(long fromSequence, int limit) throws IOException {
+        List<JournalEntry> entries = new ArrayList<>(limit);
+        long sequence = Math.max(1, fromSequence);
+        while (entries.size() < limit && sequence < nextSequence) {
+            Map.Entry<Long, Path> segment = segments.floorEntry(sequence);
+            if (segment == null) {
+                segment = segments.firstEntry();
+                sequence = segment.getKey();
+            }
+            ByteBuffer records = map(segment.getValue(), FileChannel.MapMode.READ_ONLY);
+            int position = Math.toIntExact((sequence - segment.getKey()) * RECORD_BYTES);
+            while (entries.size() < limit && sequence < nextSequence && position + RECORD_BYTES <= records.limit()) {
+                entries.add(entry(records, position));
+                position += RECORD_BYTES;
+                sequence++;
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private long append(int type, long a, long b, long c, long amount) {
+        if (buffer.remaining() < RECORD_BYTES) {
+            try {
+                roll();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        long sequence = nextSequence++;
+        int start = buffer.position();
+        buffer.putLong(sequence)
+                .putLong(System.currentTimeMillis())
+                .putInt(type)
+                .putLong(a)
+                .putLong(b)
+                .putLong(c)
+                .putLong(amount)
+                .putInt(checksum(buffer, start));
+        dirty = true;
+        apply(type, a, b, amount);
+        return sequence;
+    }
+
+    private void apply(int type, long a, long b, long amount) {
+        switch (type) {
+            case TRANSFER:
+                balances.merge(a, -amount, Long::sum);
+                balances.merge(b, amount, Long::sum);
+                break;
+            case ADJUST:
+                balances.merge(a, amount, Long::sum);
+                break;
+            case BALANCE:
+                // Absolute balances are no longer written; kept so older segments still replay.
+                balances.put(a, amount);
+                break;
+            case CLOSE:
+                balances.remove(a);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (channel != null) {
+            buffer.force();
+            channel.close();
+        }
+        Path segment = directory.resolve(String.format("%020d%s", nextSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segments.put(nextSequence, segment);
+        dirty = false;
+    }
+
+    private JournalEntry entry(ByteBuffer records, int start) {
+        int type = records.getInt(start + 16);
+        long a = records.getLong(start + 20);
+        long b = records.getLong(start + 28);
+        long c = records.getLong(start + 36);
+        long amount = records.getLong(start + 44);
+        JournalEntry entry = new JournalEntry(records.getLong(start), records.getLong(start + 8), null, a, null, null,
+                Money.fromMinorUnits(amount));
+        switch (type) {
+            case TRANSFER:
+                entry.setType("TRANSFER");
+                entry.setDestinationAccountId(b);
+                entry.setBankId(c);
+                break;
+            case ADJUST:
+                entry.setType("ADJUST");
+                break;
+            case BALANCE:
+                entry.setType("BALANCE");
+                break;
+            default:
+                entry.setType("CLOSE");
+                entry.setAmount(null);
+        }
+        return entry;
+    }
+
+    private long readLatestSnapshot() throws IOException {
+        List<Path> snapshots = snapshots();
+        if (snapshots.isEmpty()) {
+            return -1;
+        }
+        ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshots.get(snapshots.size() - 1)));
+        long sequence = snapshot.getLong();
+        int count = snapshot.getInt();
+        for (int i = 0; i < count; i++) {
+            balances.put(snapshot.getLong(), snapshot.getLong());
+        }
+        return sequence;
+    }
+
+    // Written to a temporary file and moved into place, so a crash never leaves a partial snapshot.
+    private void writeSnapshot(long sequence, Map<Long, Long> snapshotBalances) throws IOException {
+        ByteBuffer snapshot = ByteBuffer.allocate(Long.BYTES + Integer.BYTES + snapshotBalances.size() * 2 * Long.BYTES);
+        snapshot.putLong(sequence).putInt(snapshotBalances.size());
+        snapshotBalances.forEach((id, balance) -> snapshot.putLong(id).putLong(balance));
+        snapshot.flip();
+        Path target = directory.resolve(String.format("%s%020d.bin", SNAPSHOT_PREFIX, sequence));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel file = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (snapshot.hasRemaining()) {
+                file.write(snapshot);
+            }
+            file.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        List<Path> snapshots = snapshots();
+        for (Path old : snapshots.subList(0, Math.max(0, snapshots.size() - 2))) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(".bin");
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private ByteBuffer map(Path file, FileChannel.MapMode mode) throws IOException {
+        try (FileChannel segment = FileChannel.open(file, StandardOpenOption.READ)) {
+            return segment.map(mode, 0, segment.size());
+        }
+    }
+
+    private static long segmentStart(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static boolean checksumMatches(ByteBuffer records, int start) {
+        return checksum(records, start) == records.getInt(start + CHECKED_BYTES);
+    }
+
+    private static int checksum(ByteBuffer records, int start) {
+        ByteBuffer checked = records.duplicate();
+        checked.position(start).limit(start + CHECKED_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(checked);
+        return (int) crc.getValue();
+    }
+}
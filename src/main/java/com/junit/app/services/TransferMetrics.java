@@ -0,0 +1,70 @@
+package com.junit.app.services;
+
+import com.junit.app.exceptions.NotEnoughMoney;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transfer instrumentation. Meters are registered once up front, so recording is a few
+ * lock-free adds on the hot path.
+ */
+@Component
+public class TransferMetrics {
+    private final Timer succeededTimer;
+    private final Timer rejectedTimer;
+    private final Timer failedTimer;
+    private final Counter succeeded;
+    private final Counter rejected;
+    private final DistributionSummary amounts;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public TransferMetrics(MeterRegistry registry) {
+        succeededTimer = Timer.builder("transfers").tag("outcome", "success").register(registry);
+        rejectedTimer = Timer.builder("transfers").tag("outcome", "not_enough_money").register(registry);
+        failedTimer = Timer.builder("transfers").tag("outcome", "error").register(registry);
+        succeeded = Counter.builder("transfers.succeeded").register(registry);
+        rejected = Counter.builder("transfers.rejected").tag("reason", "not_enough_money").register(registry);
+        amounts = DistributionSummary.builder("transfers.amount")
+                .serviceLevelObjectives(1, 10, 100, 1_000, 10_000, 100_000, 1_000_000)
+                .register(registry);
+        registry.gauge("transfers.in.flight", inFlight);
+    }
+
+    public void record(BigDecimal amount, Runnable transfer) {
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        Timer timer = failedTimer;
+        try {
+            transfer.run();
+            timer = succeededTimer;
+            succeeded(amount);
+        } catch (NotEnoughMoney e) {
+            timer = rejectedTimer;
+            rejected.increment();
+            throw e;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public void succeeded(BigDecimal amount) {
+        succeeded.increment();
+        amounts.record(amount.doubleValue());
+    }
+
+    public void rejected() {
+        rejected.increment();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
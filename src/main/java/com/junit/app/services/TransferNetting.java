@@ -0,0 +1,159 @@
+package com.junit.app.services;
+
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Coalesces transfers between the same two accounts when {@code app.transfers.netting.enabled=true}.
+ * The first transfer for a pair opens a window of {@code app.transfers.netting.window-ms}; transfers
+ * arriving in either direction before it closes join it, and the window is settled as one batch in
+ * arrival order. The batch replays every transfer against the running balances, so each one is still
+ * checked for funds, counted and acknowledged on its own, while the accounts are locked and written
+ * once. Windows of one pair settle one after another, in the order they closed.
+ */
+@Component
+public class TransferNetting {
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxBatch;
+    private final Map<Pair, Window> open = new ConcurrentHashMap<>();
+    private final Map<Pair, CompletableFuture<Void>> settling = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService settlers;
+
+    public TransferNetting(@Value("${app.transfers.netting.enabled:false}") boolean enabled,
+                           @Value("${app.transfers.netting.window-ms:20}") long windowMillis,
+                           @Value("${app.transfers.netting.max-batch:1000}") int maxBatch,
+                           @Value("${app.transfers.netting.settle-threads:4}") int settleThreads) {
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.maxBatch = maxBatch;
+        this.timer = enabled ? Executors.newSingleThreadScheduledExecutor(runnable -> thread(runnable, "netting-timer")) : null;
+        this.settlers = enabled ? Executors.newFixedThreadPool(settleThreads, runnable -> thread(runnable, "netting-settle")) : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Completes with this transfer's own result once its window has been settled by the given batch function.
+    public CompletableFuture<TransferResult> submit(TransactionDTO transaction,
+                                                    Function<List<TransactionDTO>, List<TransferResult>> settle) {
+        Pair pair = new Pair(transaction.getOriginAccountId(), transaction.getDestinationAccountId());
+        CompletableFuture<TransferResult> result = new CompletableFuture<>();
+        while (true) {
+            Window window = open.computeIfAbsent(pair, key -> {
+                Window opened = new Window(key, settle);
+                timer.schedule(() -> close(opened), windowMillis, TimeUnit.MILLISECONDS);
+                return opened;
+            });
+            boolean full;
+            synchronized (window) {
+                if (window.closed) {
+                    continue;
+                }
+                window.transactions.add(transaction);
+                window.results.add(result);
+                full = window.transactions.size() >= maxBatch;
+            }
+            if (full) {
+                close(window);
+            }
+            return result;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+            open.values().forEach(this::close);
+            settlers.shutdown();
+        }
+    }
+
+    private void close(Window window) {
+        synchronized (window) {
+            if (window.closed) {
+                return;
+            }
+            window.closed = true;
+        }
+        open.remove(window.pair, window);
+        CompletableFuture<Void> settled = settling.compute(window.pair, (pair, previous) ->
+                (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous)
+                        .handleAsync((ignored, error) -> {
+                            settle(window);
+                            return null;
+                        }, settlers));
+        settled.whenComplete((ignored, error) -> settling.remove(window.pair, settled));
+    }
+
+    private static void settle(Window window) {
+        try {
+            List<TransferResult> results = window.settle.apply(window.transactions);
+            for (int i = 0; i < window.results.size(); i++) {
+                window.results.get(i).complete(results.get(i));
+            }
+        } catch (RuntimeException e) {
+            window.results.forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    private static Thread thread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    // Unordered, so transfers in both directions between two accounts net against each other.
+    private static final class Pair {
+        private final Long low;
+        private final Long high;
+
+        private Pair(Long a, Long b) {
+            boolean ordered = a == null || (b != null && a <= b);
+            this.low = ordered ? a : b;
+            this.high = ordered ? b : a;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Pair && Objects.equals(low, ((Pair) o).low)
+                    && Objects.equals(high, ((Pair) o).high);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(low, high);
+        }
+    }
+
+    private static final class Window {
+        private final Pair pair;
+        private final Function<List<TransactionDTO>, List<TransferResult>> settle;
+        private final List<TransactionDTO> transactions = new ArrayList<>();
+        private final List<CompletableFuture<TransferResult>> results = new ArrayList<>();
+        private boolean closed;
+
+        private Window(Pair pair, Function<List<TransactionDTO>, List<TransferResult>> settle) {
+            this.pair = pair;
+            this.settle = settle;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.junit.app.services;
+
+import com.junit.app.exceptions.TransferQueueFull;
+import com.junit.app.models.QueuedTransfer;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Accepts transfers for background processing. Workers drain the bounded queue in batches of up to
+ * {@code batchSize}, waiting at most {@code lingerMillis} for a batch to fill, and apply each batch
+ * through {@link TransferBatches}: one transaction when the batch stays on one shard, one per transfer
+ * otherwise.
+ */
+@Service
+public class TransferQueue {
+    public static final String PENDING = "PENDING";
+
+    private final AccountService accountService;
+    private final Shards shards;
+    private final BlockingQueue<QueuedTransfer> queue;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int workerCount;
+    private final Map<String, QueuedTransfer> transfers;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public TransferQueue(AccountService accountService, Shards shards, MeterRegistry meterRegistry,
+                         @Value("${app.transfers.queue.capacity:10000}") int capacity,
+                         @Value("${app.transfers.queue.batch-size:100}") int batchSize,
+                         @Value("${app.transfers.queue.linger-ms:10}") long lingerMillis,
+                         @Value("${app.transfers.queue.workers:1}") int workerCount,
+                         @Value("${app.transfers.queue.retained:100000}") int retained) {
+        this.accountService = accountService;
+        this.shards = shards;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.workerCount = workerCount;
+        // Finished transfers are kept for status lookups until newer ones push them out.
+        this.transfers = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueuedTransfer> eldest) {
+                return size() > retained;
+            }
+        });
+        meterRegistry.gaugeCollectionSize("transfers.queue.size", Collections.emptyList(), queue);
+    }
+
+    public QueuedTransfer submit(TransactionDTO transaction) {
+        QueuedTransfer transfer = new QueuedTransfer(UUID.randomUUID().toString(), transaction, PENDING, null);
+        transfers.put(transfer.getId(), transfer);
+        if (!queue.offer(transfer)) {
+            transfers.remove(transfer.getId());
+            throw new TransferQueueFull("Transfer queue is full");
+        }
+        return copy(transfer);
+    }
+
+    public Optional<QueuedTransfer> find(String id) {
+        QueuedTransfer transfer = transfers.get(id);
+        if (transfer == null) {
+            return Optional.empty();
+        }
+        synchronized (transfer) {
+            return Optional.of(copy(transfer));
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::drain, "transfer-queue-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        workers.clear();
+    }
+
+    private void drain() {
+        List<QueuedTransfer> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedTransfer first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (batch.size() < batchSize) {
+                    QueuedTransfer next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                process(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void process(List<QueuedTransfer> batch) {
+        List<TransferResult> results = TransferBatches.settle(accountService, shards, batch.stream()
+                .map(QueuedTransfer::getTransaction)
+                .collect(Collectors.toList()));
+        for (int i = 0; i < batch.size(); i++) {
+            complete(batch.get(i), results.get(i).getStatus(), results.get(i).getMessage());
+        }
+    }
+
+    private void complete(QueuedTransfer transfer, String status, String message) {
+        synchronized (transfer) {
+            transfer.setStatus(status);
+            transfer.setMessage(message);
+        }
+    }
+
+    private QueuedTransfer copy(QueuedTransfer transfer) {
+        return new QueuedTransfer(transfer.getId(), transfer.getTransaction(), transfer.getStatus(), transfer.getMessage());
+    }
+}
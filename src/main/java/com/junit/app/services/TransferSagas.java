@@ -0,0 +1,153 @@
+package com.junit.app.services;
+
+import com.junit.app.exceptions.NotEnoughMoney;
+import com.junit.app.models.Money;
+import com.junit.app.models.TransferSaga;
+import com.junit.app.repositories.AccountRepository;
+import com.junit.app.repositories.BankRepository;
+import com.junit.app.repositories.TransferSagaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.persistence.EntityManager;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Transfers between accounts on different shards, as a saga of local transactions: debit the origin
+ * and log the saga PENDING, credit the destination and leave a receipt, then mark the saga COMPLETED.
+ * A refused credit is compensated by crediting the origin back. The receipt's primary key makes the
+ * credit idempotent, so a saga left PENDING by a crash or an unanswered step is rolled forward by
+ * {@link #recover()} once it is older than {@code app.shards.saga.recovery-after-ms}.
+ */
+@Service
+@Slf4j
+public class TransferSagas {
+    private final Shards shards;
+    private final RetryingTransactionTemplate retryingTransactionTemplate;
+    private final AccountRepository accountRepository;
+    private final BankRepository bankRepository;
+    private final TransferSagaRepository transferSagaRepository;
+    private final EntityManager entityManager;
+    private final Ledger ledger;
+    private final long recoveryAfterMillis;
+
+    public TransferSagas(Shards shards, RetryingTransactionTemplate retryingTransactionTemplate,
+                         AccountRepository accountRepository, BankRepository bankRepository,
+                         TransferSagaRepository transferSagaRepository, EntityManager entityManager, Ledger ledger,
+                         @Value("${app.shards.saga.recovery-after-ms:10000}") long recoveryAfterMillis) {
+        this.shards = shards;
+        this.retryingTransactionTemplate = retryingTransactionTemplate;
+        this.accountRepository = accountRepository;
+        this.bankRepository = bankRepository;
+        this.transferSagaRepository = transferSagaRepository;
+        this.entityManager = entityManager;
+        this.ledger = ledger;
+        this.recoveryAfterMillis = recoveryAfterMillis;
+    }
+
+    /**
+     * Returns true when this call completed the saga, false when recovery completed it first. If the
+     * credit step fails without an answer the saga stays PENDING, the error is rethrown and recovery
+     * settles the transfer later.
+     */
+    public boolean transfer(Long originAccountId, Long destinationAccountId, BigDecimal amount, Long bankId) {
+        TransferSaga saga = new TransferSaga(UUID.randomUUID().toString(), originAccountId, destinationAccountId,
+                bankId, amount, TransferSaga.State.PENDING, System.currentTimeMillis());
+        begin(saga);
+        if (!credit(saga)) {
+            compensate(saga);
+            throw new NoSuchElementException("No account " + destinationAccountId);
+        }
+        return complete(saga);
+    }
+
+    /**
+     * Settles the PENDING sagas old enough to have been abandoned, on every shard, and returns the
+     * ones settled by this call in their final state.
+     */
+    public List<TransferSaga> recover() {
+        long createdBefore = System.currentTimeMillis() - recoveryAfterMillis;
+        List<TransferSaga> settled = new ArrayList<>();
+        for (int shard = 0; shard < shards.count(); shard++) {
+            List<TransferSaga> pending = shards.inTransaction(shard,
+                    () -> transferSagaRepository.findByStateBefore(TransferSaga.State.PENDING, createdBefore));
+            for (TransferSaga saga : pending) {
+                try {
+                    if (credit(saga)) {
+                        if (complete(saga)) {
+                            settled.add(saga.withState(TransferSaga.State.COMPLETED));
+                        }
+                    } else if (compensate(saga)) {
+                        settled.add(saga.withState(TransferSaga.State.COMPENSATED));
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Could not settle transfer saga {}, will retry", saga.getId(), e);
+                }
+            }
+        }
+        return settled;
+    }
+
+    private void begin(TransferSaga saga) {
+        shards.call(shards.shardOf(saga.getOriginAccountId()), () -> retryingTransactionTemplate.execute(() -> {
+            if (!bankRepository.existsById(saga.getBankId())) {
+                throw new NoSuchElementException("No bank " + saga.getBankId());
+            }
+            if (accountRepository.debit(saga.getOriginAccountId(), saga.getAmount()) == 0) {
+                if (!accountRepository.existsById(saga.getOriginAccountId())) {
+                    throw new NoSuchElementException("No account " + saga.getOriginAccountId());
+                }
+                throw new NotEnoughMoney("Not enough money for the account");
+            }
+            ledger.record(saga.getOriginAccountId(), -Money.toMinorUnits(saga.getAmount()));
+            entityManager.persist(saga);
+            return null;
+        }));
+    }
+
+    // Applies the credit at most once; true when the destination has been credited, by this call or an earlier one.
+    private boolean credit(TransferSaga saga) {
+        int shard = shards.shardOf(saga.getDestinationAccountId());
+        try {
+            return shards.call(shard, () -> retryingTransactionTemplate.execute(() -> {
+                TransferSaga receipt = transferSagaRepository.findById(saga.getId()).orElse(null);
+                if (receipt != null) {
+                    return receipt.getState() == TransferSaga.State.CREDITED;
+                }
+                boolean credited = accountRepository.credit(saga.getDestinationAccountId(), saga.getAmount()) == 1;
+                if (credited) {
+                    ledger.record(saga.getDestinationAccountId(), Money.toMinorUnits(saga.getAmount()));
+                }
+                entityManager.persist(saga.withState(credited ? TransferSaga.State.CREDITED : TransferSaga.State.REFUSED));
+                return credited;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent attempt wrote the receipt first and this one rolled back; its outcome stands.
+            return shards.inTransaction(shard, () -> transferSagaRepository.findById(saga.getId()))
+                    .map(receipt -> receipt.getState() == TransferSaga.State.CREDITED)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    private boolean complete(TransferSaga saga) {
+        return shards.call(shards.shardOf(saga.getOriginAccountId()), () -> retryingTransactionTemplate.execute(() ->
+                transferSagaRepository.transition(saga.getId(), TransferSaga.State.PENDING, TransferSaga.State.COMPLETED) == 1));
+    }
+
+    private boolean compensate(TransferSaga saga) {
+        return shards.call(shards.shardOf(saga.getOriginAccountId()), () -> retryingTransactionTemplate.execute(() -> {
+            if (transferSagaRepository.transition(saga.getId(), TransferSaga.State.PENDING, TransferSaga.State.COMPENSATED) == 0) {
+                return false;
+            }
+            accountRepository.credit(saga.getOriginAccountId(), saga.getAmount());
+            ledger.record(saga.getOriginAccountId(), Money.toMinorUnits(saga.getAmount()));
+            return true;
+        }));
+    }
+}
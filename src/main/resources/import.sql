@@ -1,3 +1,5 @@
-insert into accounts(name, balance) values('Kevin', 1000);
-insert into accounts(name, balance) values('Brando', 2000);
-insert into banks(name, total_transfers) values('The American Bank', 0);
\ No newline at end of file
+insert into accounts(id, name, balance, version) values(1, 'Kevin', 1000, 0);
+insert into accounts(id, name, balance, version) values(2, 'Brando', 2000, 0);
+insert into banks(id, name, total_transfers) values(1, 'The American Bank', 0);
+alter sequence accounts_seq restart with 3;
+alter sequence banks_seq restart with 2;
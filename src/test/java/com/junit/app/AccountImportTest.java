@@ -0,0 +1,71 @@
+package com.junit.app;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.ImportResult;
+import com.junit.app.repositories.AccountRepository;
+import com.junit.app.services.AccountImportService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("integration_import")
+@SpringBootTest(properties = {"logging.level.org.hibernate.SQL=OFF", "app.accounts.import.batch-size=100"})
+@DirtiesContext
+public class AccountImportTest {
+    @Autowired
+    private AccountImportService accountImportService;
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Test
+    void importCsvTest() throws IOException {
+        String csv = "name,balance\n" +
+                "Karen,3000\n" +
+                "\"Smith, \"\"J\"\"\",10.50\n" +
+                "Broken,10.001\n" +
+                "\n" +
+                "John,0\n";
+
+        ImportResult result = accountImportService.importAccounts(stream(csv), AccountImportService.Format.CSV);
+
+        assertEquals(3, result.getRows());
+        assertEquals(1, result.getRejected());
+        assertEquals("Line 4: Amount must have at most 2 decimal places", result.getFirstError());
+        assertEquals("10.50", accountRepository.findByName("Smith, \"J\"").orElseThrow().getBalance().toPlainString());
+        assertTrue(accountRepository.findByName("Broken").isEmpty());
+    }
+
+    @Test
+    void importNdjsonTest() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            ndjson.append("{\"name\":\"Bulk").append(i).append("\",\"balance\":").append(i).append("}\n");
+        }
+        ndjson.append("{\"name\":\"\",\"balance\":1}\n");
+        long before = accountRepository.count();
+
+        ImportResult result = accountImportService.importAccounts(stream(ndjson.toString()),
+                AccountImportService.Format.NDJSON);
+
+        assertEquals(10000, result.getRows());
+        assertEquals(1, result.getRejected());
+        assertTrue(result.getRowsPerSecond() > 0);
+        assertEquals(before + 10000, accountRepository.count());
+        Account first = accountRepository.findByName("Bulk0").orElseThrow();
+        Account last = accountRepository.findByName("Bulk9999").orElseThrow();
+        assertEquals(first.getId() + 9999, last.getId());
+    }
+
+    private ByteArrayInputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
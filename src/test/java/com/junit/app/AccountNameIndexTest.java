@@ -0,0 +1,45 @@
+package com.junit.app;
+
+import com.junit.app.repositories.AccountRepository;
+import com.junit.app.services.AccountNameIndex;
+import com.junit.app.services.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class AccountNameIndexTest {
+    private AccountNameIndex accountNameIndex;
+
+    @BeforeEach
+    void setUp() {
+        accountNameIndex = new AccountNameIndex(mock(AccountRepository.class), mock(Shards.class));
+        accountNameIndex.put(1L, "Kevin");
+        accountNameIndex.put(2L, "Brando");
+        accountNameIndex.put(3L, "Karen");
+        accountNameIndex.put(4L, "Kevin");
+    }
+
+    @Test
+    void prefixSearchTest() {
+        assertEquals(List.of(3L, 1L, 4L), accountNameIndex.search("K", 10));
+        assertEquals(List.of(1L, 4L), accountNameIndex.search("Kev", 10));
+        assertEquals(List.of(3L, 1L), accountNameIndex.search("K", 2));
+        assertEquals(List.of(2L, 3L, 1L, 4L), accountNameIndex.search("", 10));
+        assertTrue(accountNameIndex.search("Z", 10).isEmpty());
+    }
+
+    @Test
+    void renameAndRemoveTest() {
+        accountNameIndex.put(1L, "Zoe");
+        accountNameIndex.remove(4L);
+
+        assertEquals(List.of(3L), accountNameIndex.search("K", 10));
+        assertEquals(List.of(1L), accountNameIndex.search("Z", 10));
+        assertEquals("Zoe", accountNameIndex.name(1L));
+    }
+}
@@ -0,0 +1,73 @@
+package com.junit.app;
+
+import com.junit.app.exceptions.NotEnoughMoney;
+import com.junit.app.models.Account;
+import com.junit.app.repositories.ChangeCounterRepository;
+import com.junit.app.services.AccountChangeTracker;
+import com.junit.app.services.AccountService;
+import com.junit.app.services.Shards;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {"app.transfers.rate-limit.enabled=false", "app.accounts.change-counter.flush-interval-ms=3600000"})
+@DirtiesContext
+class AccountVersionTest {
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountChangeTracker accountChangeTracker;
+    @Autowired
+    private ChangeCounterRepository changeCounterRepository;
+    @Autowired
+    private Shards shards;
+
+    @Test
+    void accountsVersionTest() {
+        Long a = accountService.save(new Account(null, "Version A", new BigDecimal("10.00"))).getId();
+        Long b = accountService.save(new Account(null, "Version B", new BigDecimal("0.00"))).getId();
+
+        String before = accountService.accountsVersion();
+        assertThrows(NotEnoughMoney.class, () -> accountService.transfer(a, b, new BigDecimal("20.00"), 1L));
+        assertEquals(before, accountService.accountsVersion());
+
+        accountService.transfer(a, b, new BigDecimal("5.00"), 1L);
+        assertNotEquals(before, accountService.accountsVersion());
+    }
+
+    @Test
+    void saveVersionTest() {
+        Account saved = accountService.save(new Account(null, "Versioned", new BigDecimal("10.00")));
+        Account stale = new Account(saved.getId(), "Versioned", new BigDecimal("20.00"));
+        assertThrows(OptimisticLockingFailureException.class, () -> accountService.save(
+                new Account(saved.getId(), "Versioned", new BigDecimal("20.00"), saved.getVersion() + 1)));
+
+        Account overwritten = accountService.overwrite(stale);
+        assertEquals(saved.getVersion() + 1, overwritten.getVersion());
+        assertEquals(0, new BigDecimal("20.00").compareTo(accountService.reviewBalance(saved.getId())));
+    }
+
+    @Test
+    void flushTest() {
+        // Another instance over the same database: it sees this one's changes once they are flushed.
+        AccountChangeTracker other = new AccountChangeTracker(changeCounterRepository, shards, 8);
+        long mine = Long.parseLong(accountChangeTracker.version());
+        long theirs = Long.parseLong(other.version());
+
+        accountChangeTracker.changed();
+        assertEquals(mine + 1, Long.parseLong(accountChangeTracker.version()));
+        assertEquals(theirs, Long.parseLong(other.version()));
+
+        accountChangeTracker.flush();
+        assertEquals(mine + 1, Long.parseLong(accountChangeTracker.version()));
+        assertEquals(mine + 1, Long.parseLong(other.version()));
+    }
+}
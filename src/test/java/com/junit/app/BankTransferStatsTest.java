@@ -0,0 +1,89 @@
+package com.junit.app;
+
+import com.junit.app.models.BankStats;
+import com.junit.app.models.Money;
+import com.junit.app.models.WindowStats;
+import com.junit.app.services.BankTransferStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BankTransferStatsTest {
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private BankTransferStats bankTransferStats;
+
+    @BeforeEach
+    void setUp() {
+        bankTransferStats = new BankTransferStats(now::get);
+    }
+
+    @Test
+    void windowsTest() {
+        bankTransferStats.record(1L, new BigDecimal("100"));
+        now.addAndGet(30_000);
+        bankTransferStats.record(1L, new BigDecimal("20.50"));
+        bankTransferStats.record(2L, new BigDecimal("5"));
+
+        BankStats stats = bankTransferStats.stats(1L);
+        assertEquals(List.of("1m", "5m", "1h", "24h"), List.copyOf(stats.getWindows().keySet()));
+        WindowStats minute = stats.getWindows().get("1m");
+        assertEquals(2, minute.getCount());
+        assertEquals(new BigDecimal("120.50"), minute.getAmount());
+        assertEquals(new BigDecimal("20.50"), minute.getMin());
+        assertEquals(new BigDecimal("100.00"), minute.getMax());
+        assertEquals(1, bankTransferStats.stats(2L).getWindows().get("24h").getCount());
+    }
+
+    @Test
+    void concurrentTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 1; i <= 10_000; i++) {
+                    bankTransferStats.record(1L, thread * 10_000L + i);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        WindowStats minute = bankTransferStats.stats(1L).getWindows().get("1m");
+        assertEquals(40_000, minute.getCount());
+        assertEquals(Money.fromMinorUnits(40_000L * 40_001 / 2), minute.getAmount());
+        assertEquals(new BigDecimal("0.01"), minute.getMin());
+        assertEquals(new BigDecimal("400.00"), minute.getMax());
+    }
+
+    @Test
+    void expiryTest() {
+        bankTransferStats.record(1L, new BigDecimal("100"));
+        now.addAndGet(45_000);
+        bankTransferStats.record(1L, new BigDecimal("10"));
+        now.addAndGet(30_000);
+
+        BankStats stats = bankTransferStats.stats(1L);
+        assertEquals(1, stats.getWindows().get("1m").getCount());
+        assertEquals(new BigDecimal("10.00"), stats.getWindows().get("1m").getMax());
+        assertEquals(2, stats.getWindows().get("5m").getCount());
+
+        now.addAndGet(2 * 24 * 3600_000L);
+        WindowStats day = bankTransferStats.stats(1L).getWindows().get("24h");
+        assertEquals(0, day.getCount());
+        assertNull(day.getMin());
+        assertEquals(0, bankTransferStats.stats(3L).getWindows().get("1m").getCount());
+    }
+}
@@ -0,0 +1,99 @@
+package com.junit.app;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.JournalEntry;
+import com.junit.app.repositories.AccountRepository;
+import com.junit.app.services.AccountService;
+import com.junit.app.services.JournalService;
+import com.junit.app.services.Shards;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The process dies after a transfer has committed but before the journal was forced: the record that
+ * only reached the page cache is gone on disk. A restart must keep the committed balances and bring
+ * the journal back in line with them.
+ */
+@SpringBootTest(properties = {"app.journal.enabled=true", "app.transfers.rate-limit.enabled=false"})
+@DirtiesContext
+class JournalRecoveryTest {
+    private static final Path DIRECTORY = createDirectory();
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+    @Autowired
+    private Shards shards;
+    @Autowired
+    private JournalService journalService;
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) {
+        registry.add("app.journal.dir", DIRECTORY::toString);
+    }
+
+    @Test
+    void crashBeforeFsyncTest() throws IOException {
+        Long a = accountService.save(new Account(null, "Journal A", new BigDecimal("100.00"))).getId();
+        Long b = accountService.save(new Account(null, "Journal B", new BigDecimal("0.00"))).getId();
+        accountService.transfer(a, b, new BigDecimal("30.00"), 1L);
+
+        List<JournalEntry> entries = journalService.read(1, 1000);
+        JournalEntry transfer = entries.get(entries.size() - 1);
+        assertEquals("TRANSFER", transfer.getType());
+        lose(transfer.getSequence());
+
+        JournalService restarted = new JournalService(accountRepository, shards, true, DIRECTORY.toString(), 1 << 26);
+        try {
+            restarted.open();
+            assertEquals(0, new BigDecimal("70.00").compareTo(accountService.reviewBalance(a)));
+            assertEquals(0, new BigDecimal("30.00").compareTo(accountService.reviewBalance(b)));
+            assertEquals(7000L, restarted.balances().get(a));
+            assertEquals(3000L, restarted.balances().get(b));
+
+            List<JournalEntry> replayed = restarted.read(transfer.getSequence(), 10);
+            assertEquals(List.of("ADJUST", "ADJUST"), replayed.stream().map(JournalEntry::getType).collect(Collectors.toList()));
+            assertEquals(List.of(a, b), replayed.stream().map(JournalEntry::getAccountId).collect(Collectors.toList()));
+        } finally {
+            restarted.close();
+        }
+    }
+
+    // Zeroes the record on disk, as the crash would have left the never-forced page.
+    private static void lose(long sequence) throws IOException {
+        Path segment;
+        try (Stream<Path> files = Files.list(DIRECTORY)) {
+            segment = files.filter(file -> file.toString().endsWith(".seg")).sorted().reduce((first, last) -> last).orElseThrow();
+        }
+        String name = segment.getFileName().toString();
+        long start = Long.parseLong(name.substring(0, name.length() - ".seg".length()));
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek((sequence - start) * 56);
+            file.write(new byte[56]);
+        }
+    }
+
+    private static Path createDirectory() {
+        try {
+            return Files.createTempDirectory("journal");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,23 +1,31 @@
 package com.junit.app;
 
 import com.junit.app.models.Account;
+import com.junit.app.models.TransferCounter;
 import com.junit.app.repositories.AccountRepository;
+import com.junit.app.repositories.TransferCounterRepository;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Tag("integration_jpa")
 @DataJpaTest
 public class JpaIntegrationTest {
     @Autowired
     AccountRepository accountRepository;
+    @Autowired
+    TransferCounterRepository transferCounterRepository;
 
     @Test
     void findByIdTest() {
@@ -84,4 +92,75 @@ public class JpaIntegrationTest {
 
         Assertions.assertThrows(NoSuchElementException.class, () -> accountRepository.findByName("Brando").orElseThrow());
     }
+
+    @Test
+    void transferCounterTest() {
+        Assertions.assertEquals(0L, transferCounterRepository.sumByBankId(1L));
+        Assertions.assertEquals(0, transferCounterRepository.increment(1L, 0, 5L));
+
+        transferCounterRepository.save(new TransferCounter(null, 1L, 0, 5L));
+        transferCounterRepository.save(new TransferCounter(null, 1L, 1, 3L));
+        Assertions.assertEquals(1, transferCounterRepository.increment(1L, 0, 2L));
+
+        Assertions.assertEquals(10L, transferCounterRepository.sumByBankId(1L));
+        Assertions.assertEquals(0L, transferCounterRepository.sumByBankId(2L));
+    }
+
+    @Test
+    void debitTest() {
+        Assertions.assertEquals(1, accountRepository.debit(1L, new BigDecimal("400")));
+        Assertions.assertEquals("600.00", accountRepository.findById(1L).orElseThrow().getBalance().toPlainString());
+
+        Assertions.assertEquals(0, accountRepository.debit(1L, new BigDecimal("600.01")));
+        Assertions.assertEquals("600.00", accountRepository.findById(1L).orElseThrow().getBalance().toPlainString());
+
+        Assertions.assertEquals(1, accountRepository.debit(1L, new BigDecimal("600")));
+        Assertions.assertEquals("0.00", accountRepository.findById(1L).orElseThrow().getBalance().toPlainString());
+
+        Assertions.assertEquals(0, accountRepository.debit(99L, new BigDecimal("1")));
+    }
+
+    @Test
+    void versionTest() {
+        Assertions.assertEquals(0L, accountRepository.findVersionById(1L).orElseThrow());
+
+        accountRepository.debit(1L, new BigDecimal("100"));
+        accountRepository.credit(1L, new BigDecimal("50"));
+        Assertions.assertEquals(2L, accountRepository.findVersionById(1L).orElseThrow());
+
+        Account account = accountRepository.findById(1L).orElseThrow();
+        account.setName("Kevin R.");
+        accountRepository.saveAndFlush(account);
+        Assertions.assertEquals(3L, accountRepository.findVersionById(1L).orElseThrow());
+        Assertions.assertTrue(accountRepository.findVersionById(99L).isEmpty());
+    }
+
+    @Test
+    void creditTest() {
+        Assertions.assertEquals(1, accountRepository.credit(2L, new BigDecimal("250.50")));
+        Assertions.assertEquals("2250.50", accountRepository.findById(2L).orElseThrow().getBalance().toPlainString());
+
+        Assertions.assertEquals(0, accountRepository.credit(99L, new BigDecimal("1")));
+    }
+
+    @Test
+    void findPageAfterTest() {
+        List<Account> firstPage = accountRepository.findPageAfter(0L, PageRequest.of(0, 1));
+        Assertions.assertEquals(1, firstPage.size());
+        Assertions.assertEquals("Kevin", firstPage.get(0).getName());
+
+        List<Account> secondPage = accountRepository.findPageAfter(firstPage.get(0).getId(), PageRequest.of(0, 1));
+        Assertions.assertEquals(1, secondPage.size());
+        Assertions.assertEquals("Brando", secondPage.get(0).getName());
+
+        Assertions.assertTrue(accountRepository.findPageAfter(secondPage.get(0).getId(), PageRequest.of(0, 1)).isEmpty());
+    }
+
+    @Test
+    void streamAllTest() {
+        try (Stream<Account> accounts = accountRepository.streamAll()) {
+            List<String> names = accounts.map(Account::getName).collect(Collectors.toList());
+            Assertions.assertEquals(Arrays.asList("Kevin", "Brando"), names);
+        }
+    }
 }
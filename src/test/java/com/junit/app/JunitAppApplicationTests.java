@@ -3,9 +3,14 @@ package com.junit.app;
 import com.junit.app.exceptions.NotEnoughMoney;
 import com.junit.app.models.Account;
 import com.junit.app.models.Bank;
+import com.junit.app.models.CacheStats;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
 import com.junit.app.repositories.AccountRepository;
 import com.junit.app.repositories.BankRepository;
+import com.junit.app.services.AccountCache;
 import com.junit.app.services.AccountServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,13 +20,16 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -36,9 +44,14 @@ class JunitAppApplicationTests {
 	BankRepository bankRepository;
 	@Autowired
 	AccountServiceImpl accountService;
+	@Autowired
+	AccountCache accountCache;
+	@Autowired
+	MeterRegistry meterRegistry;
 
 	@BeforeEach
 	void setUp() {
+		accountCache.invalidateAll();
 //		accountService = new AccountServiceImpl(accountRepository, bankRepository);
 //		Data.ACCOUNT_001.setBalance(new BigDecimal("1000"));
 //		Data.ACCOUNT_002.setBalance(new BigDecimal("2000"));
@@ -47,9 +60,16 @@ class JunitAppApplicationTests {
 
 	@Test
 	void contextLoads() {
-		when(accountRepository.findById(1L)).thenReturn(Data.createAccount001());
-		when(accountRepository.findById(2L)).thenReturn(Data.createAccount002());
+		Account account1 = Data.createAccount001().orElseThrow();
+		Account account2 = Data.createAccount002().orElseThrow();
+		when(accountRepository.findById(1L)).thenReturn(Optional.of(account1));
+		when(accountRepository.findById(2L)).thenReturn(Optional.of(account2));
+		when(accountRepository.debit(eq(1L), any())).then(invocation -> debit(account1, invocation.getArgument(1)));
+		when(accountRepository.credit(eq(2L), any())).then(invocation -> credit(account2, invocation.getArgument(1)));
+		when(accountRepository.existsById(1L)).thenReturn(true);
 		when(bankRepository.findById(1L)).thenReturn(Data.createBank());
+		when(bankRepository.existsById(1L)).thenReturn(true);
+		int initialTransfers = accountService.reviewTotalTransfers(1L);
 
 		BigDecimal originBalance = accountService.reviewBalance(1L);
 		BigDecimal destinationBalance = accountService.reviewBalance(2L);
@@ -66,24 +86,35 @@ class JunitAppApplicationTests {
 		assertEquals("2100", destinationBalance.toPlainString());
 
 		int totalTransfers = accountService.reviewTotalTransfers(1L);
-		assertEquals(1, totalTransfers);
+		assertEquals(initialTransfers + 1, totalTransfers);
 
-		verify(accountRepository, times(3)).findById(1L);
-		verify(accountRepository, times(3)).findById(2L);
-		verify(accountRepository, times(2)).save(any(Account.class));
+		verify(accountRepository, times(2)).findById(1L);
+		verify(accountRepository, times(2)).findById(2L);
+		verify(accountRepository).debit(1L, new BigDecimal("100"));
+		verify(accountRepository).credit(2L, new BigDecimal("100"));
+		verify(accountRepository, never()).existsById(any());
+		verify(accountRepository, never()).save(any(Account.class));
 
 		verify(bankRepository, times(2)).findById(1L);
-		verify(bankRepository).save(any(Bank.class));
+		verify(bankRepository).existsById(1L);
+		verify(bankRepository, never()).save(any(Bank.class));
 
 		verify(accountRepository, never()).findAll();
-		verify(accountRepository, times(6)).findById(any(Long.class));
+		verify(accountRepository, times(4)).findById(any(Long.class));
 	}
 
 	@Test
 	void contextLoads2() {
-		when(accountRepository.findById(1L)).thenReturn(Data.createAccount001());
-		when(accountRepository.findById(2L)).thenReturn(Data.createAccount002());
+		Account account1 = Data.createAccount001().orElseThrow();
+		Account account2 = Data.createAccount002().orElseThrow();
+		when(accountRepository.findById(1L)).thenReturn(Optional.of(account1));
+		when(accountRepository.findById(2L)).thenReturn(Optional.of(account2));
+		when(accountRepository.debit(eq(1L), any())).then(invocation -> debit(account1, invocation.getArgument(1)));
+		when(accountRepository.credit(eq(2L), any())).then(invocation -> credit(account2, invocation.getArgument(1)));
+		when(accountRepository.existsById(1L)).thenReturn(true);
 		when(bankRepository.findById(1L)).thenReturn(Data.createBank());
+		when(bankRepository.existsById(1L)).thenReturn(true);
+		int initialTransfers = accountService.reviewTotalTransfers(1L);
 
 		BigDecimal originBalance = accountService.reviewBalance(1L);
 		BigDecimal destinationBalance = accountService.reviewBalance(2L);
@@ -102,32 +133,74 @@ class JunitAppApplicationTests {
 		assertEquals("2000", destinationBalance.toPlainString());
 
 		int totalTransfers = accountService.reviewTotalTransfers(1L);
-		assertEquals(0, totalTransfers);
+		assertEquals(initialTransfers, totalTransfers);
 
-		verify(accountRepository, times(3)).findById(1L);
-		verify(accountRepository, times(2)).findById(2L);
+		verify(accountRepository, times(1)).findById(1L);
+		verify(accountRepository, times(1)).findById(2L);
+		verify(accountRepository).debit(1L, new BigDecimal("1200"));
+		verify(accountRepository).existsById(1L);
+		verify(accountRepository, never()).credit(any(), any());
 		verify(accountRepository, never()).save(any(Account.class));
 
-		verify(bankRepository, times(1)).findById(1L);
+		verify(bankRepository, times(2)).findById(1L);
+		verify(bankRepository).existsById(1L);
 		verify(bankRepository, never()).save(any(Bank.class));
 
 		verify(accountRepository, never()).findAll();
-		verify(accountRepository, times(5)).findById(any(Long.class));
+		verify(accountRepository, times(2)).findById(any(Long.class));
 	}
 
 	@Test
 	void contextLoads3() {
 		when(accountRepository.findById(1L)).thenReturn(Data.createAccount001());
 
+		CacheStats before = accountCache.stats();
+
 		Account account1 = accountService.findById(1L);
 		Account account2 = accountService.findById(1L);
 
-		assertSame(account1, account2);
-		assertTrue(account1 == account2);
+		assertEquals(account1, account2);
+		assertNotSame(account1, account2);
 		assertEquals("Kevin", account1.getName());
 		assertEquals("Kevin", account2.getName());
 
-		verify(accountRepository, times(2)).findById(1L);
+		CacheStats after = accountCache.stats();
+		assertEquals(before.getMisses() + 1, after.getMisses());
+		assertEquals(before.getHits() + 1, after.getHits());
+
+		verify(accountRepository, times(1)).findById(1L);
+	}
+
+	@Test
+	void cacheInvalidationTest() {
+		when(accountRepository.findById(1L)).thenReturn(Data.createAccount001());
+		when(accountRepository.save(any())).then(invocation -> invocation.getArgument(0));
+
+		Account account = accountService.findById(1L);
+		account.setBalance(new BigDecimal("5000"));
+		assertEquals("1000", accountService.findById(1L).getBalance().toPlainString());
+
+		accountService.save(account);
+		when(accountRepository.findById(1L)).thenReturn(Optional.of(account));
+		assertEquals("5000", accountService.findById(1L).getBalance().toPlainString());
+
+		accountService.deleteById(1L);
+		when(accountRepository.findById(1L)).thenReturn(Optional.empty());
+		assertThrows(NoSuchElementException.class, () -> accountService.findById(1L));
+
+		verify(accountRepository, times(3)).findById(1L);
+	}
+
+	@Test
+	void findByNameTest() {
+		// Saved by another instance: this one never saw the commit, yet the lookup finds the row.
+		when(accountRepository.findByName("Zelda")).thenReturn(Optional.of(new Account(3L, "Zelda", new BigDecimal("3000"))));
+
+		assertEquals("3000", accountService.findByName("Zelda").orElseThrow().getBalance().toPlainString());
+		assertTrue(accountService.findByName("Nobody").isEmpty());
+
+		verify(accountRepository).findByName("Zelda");
+		verify(accountRepository).findByName("Nobody");
 	}
 
 	@Test
@@ -162,4 +235,94 @@ class JunitAppApplicationTests {
 
 		verify(accountRepository).save(any());
 	}
+
+	@Test
+	void transferAllTest() {
+		Account account1 = Data.createAccount001().orElseThrow();
+		Account account2 = Data.createAccount002().orElseThrow();
+		Bank bank = Data.createBank().orElseThrow();
+		when(accountRepository.findAllByIdForUpdate(any())).thenReturn(Arrays.asList(account1, account2));
+		when(bankRepository.findAllById(any())).thenReturn(Arrays.asList(bank));
+		when(bankRepository.findById(1L)).thenReturn(Optional.of(bank));
+		int initialTransfers = accountService.reviewTotalTransfers(1L);
+
+		TransactionDTO transactionDTO1 = new TransactionDTO();
+		transactionDTO1.setOriginAccountId(1L);
+		transactionDTO1.setDestinationAccountId(2L);
+		transactionDTO1.setAmount(new BigDecimal("100"));
+		transactionDTO1.setBankId(1L);
+
+		TransactionDTO transactionDTO2 = new TransactionDTO();
+		transactionDTO2.setOriginAccountId(1L);
+		transactionDTO2.setDestinationAccountId(2L);
+		transactionDTO2.setAmount(new BigDecimal("1000"));
+		transactionDTO2.setBankId(1L);
+
+		TransactionDTO transactionDTO3 = new TransactionDTO();
+		transactionDTO3.setOriginAccountId(2L);
+		transactionDTO3.setDestinationAccountId(1L);
+		transactionDTO3.setAmount(new BigDecimal("50"));
+		transactionDTO3.setBankId(1L);
+
+		TransactionDTO transactionDTO4 = new TransactionDTO();
+		transactionDTO4.setOriginAccountId(2L);
+		transactionDTO4.setDestinationAccountId(1L);
+		transactionDTO4.setAmount(new BigDecimal("0.001"));
+		transactionDTO4.setBankId(1L);
+
+		List<TransferResult> results = accountService.transferAll(
+				Arrays.asList(transactionDTO1, transactionDTO2, transactionDTO3, transactionDTO4));
+
+		assertEquals(4, results.size());
+		assertEquals("OK", results.get(0).getStatus());
+		assertEquals("ERROR", results.get(1).getStatus());
+		assertEquals("Not enough money for the account", results.get(1).getMessage());
+		assertEquals("OK", results.get(2).getStatus());
+		assertEquals("ERROR", results.get(3).getStatus());
+		assertEquals("Amount must have at most 2 decimal places", results.get(3).getMessage());
+
+		assertEquals("950.00", account1.getBalance().toPlainString());
+		assertEquals("2050.00", account2.getBalance().toPlainString());
+		assertEquals(initialTransfers + 2, accountService.reviewTotalTransfers(1L));
+		assertEquals(0, bank.getTotalTransfers());
+
+		verify(accountRepository).findAllByIdForUpdate(any());
+		verify(accountRepository, never()).findById(any(Long.class));
+		verify(accountRepository).saveAll(any());
+		verify(bankRepository, never()).saveAll(any());
+	}
+
+	@Test
+	void transferMetricsTest() {
+		Account account1 = Data.createAccount001().orElseThrow();
+		Account account2 = Data.createAccount002().orElseThrow();
+		when(accountRepository.debit(eq(1L), any())).then(invocation -> debit(account1, invocation.getArgument(1)));
+		when(accountRepository.credit(eq(2L), any())).then(invocation -> credit(account2, invocation.getArgument(1)));
+		when(accountRepository.existsById(1L)).thenReturn(true);
+		when(bankRepository.existsById(1L)).thenReturn(true);
+		double succeeded = meterRegistry.get("transfers.succeeded").counter().count();
+		double rejected = meterRegistry.get("transfers.rejected").counter().count();
+		long timed = meterRegistry.get("transfers").tag("outcome", "success").timer().count();
+
+		accountService.transfer(1L, 2L, new BigDecimal("100"), 1L);
+		assertThrows(NotEnoughMoney.class, () -> accountService.transfer(1L, 2L, new BigDecimal("5000"), 1L));
+
+		assertEquals(succeeded + 1, meterRegistry.get("transfers.succeeded").counter().count());
+		assertEquals(rejected + 1, meterRegistry.get("transfers.rejected").counter().count());
+		assertEquals(timed + 1, meterRegistry.get("transfers").tag("outcome", "success").timer().count());
+		assertEquals(0, meterRegistry.get("transfers.in.flight").gauge().value());
+	}
+
+	private int debit(Account account, BigDecimal amount) {
+		if (account.getBalance().compareTo(amount) < 0) {
+			return 0;
+		}
+		account.debit(amount);
+		return 1;
+	}
+
+	private int credit(Account account, BigDecimal amount) {
+		account.credit(amount);
+		return 1;
+	}
 }
@@ -0,0 +1,130 @@
+package com.junit.app;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.AccountBalance;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.services.AccountService;
+import com.junit.app.services.Ledger;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Balances are read back at instants between changes, before and after checkpoints. The checkpoint cut
+ * does not lag here, and small ranges make the export run several of them in parallel.
+ */
+@SpringBootTest(properties = {
+        "app.transfers.rate-limit.enabled=false",
+        "app.ledger.commit-lag-ms=0",
+        "app.ledger.checkpoint-interval-ms=3600000",
+        "app.ledger.range-size=2"})
+@DirtiesContext
+class LedgerTest {
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private Ledger ledger;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void balanceAtTest() throws Exception {
+        Instant beforeOpening = tick();
+        Account origin = accountService.save(new Account(null, "Ledger Origin", new BigDecimal("100.00")));
+        Account destination = accountService.save(new Account(null, "Ledger Destination", new BigDecimal("0.00")));
+        Instant opened = tick();
+        accountService.transfer(origin.getId(), destination.getId(), new BigDecimal("30.00"), 1L);
+        Instant transferred = tick();
+        ledger.checkpoint();
+        Instant checkpointed = tick();
+        TransactionDTO batched = new TransactionDTO();
+        batched.setOriginAccountId(origin.getId());
+        batched.setDestinationAccountId(destination.getId());
+        batched.setAmount(new BigDecimal("20.00"));
+        batched.setBankId(1L);
+        accountService.transferAll(List.of(batched));
+        Account adjustment = new Account(origin.getId(), origin.getName(), new BigDecimal("75.00"));
+        adjustment.setVersion(accountService.findVersion(origin.getId()).orElseThrow());
+        accountService.save(adjustment);
+        Instant adjusted = tick();
+        ledger.checkpoint();
+
+        assertEquals(Optional.empty(), accountService.balanceAt(origin.getId(), beforeOpening));
+        assertBalance("100.00", origin.getId(), opened);
+        assertBalance("70.00", origin.getId(), transferred);
+        assertBalance("30.00", destination.getId(), checkpointed);
+        assertBalance("75.00", origin.getId(), adjusted);
+        assertBalance("50.00", destination.getId(), adjusted);
+        assertBalance("1000.00", 1L, adjusted);
+
+        Map<Long, BigDecimal> exported = new ConcurrentHashMap<>();
+        accountService.streamBalancesAt(transferred, balance -> exported.put(balance.getId(), balance.getBalance()));
+        assertEquals(0, new BigDecimal("70.00").compareTo(exported.get(origin.getId())));
+        assertEquals(0, new BigDecimal("30.00").compareTo(exported.get(destination.getId())));
+        assertEquals(0, new BigDecimal("2000.00").compareTo(exported.get(2L)));
+
+        List<Long> order = new ArrayList<>();
+        accountService.streamBalancesAt(adjusted, balance -> order.add(balance.getId()));
+        assertTrue(order.containsAll(List.of(1L, 2L, origin.getId(), destination.getId())));
+        assertEquals(order.stream().sorted().collect(Collectors.toList()), order);
+
+        // Pulled a range at a time, the export yields the same balances in the same order.
+        List<Long> pulled = new ArrayList<>();
+        Iterator<List<AccountBalance>> pages = accountService.balancePagesAt(adjusted);
+        while (pages.hasNext()) {
+            List<AccountBalance> page = pages.next();
+            assertTrue(page.size() <= 2);
+            page.forEach(balance -> pulled.add(balance.getId()));
+        }
+        assertEquals(order, pulled);
+    }
+
+    @Test
+    void stampAtCommitTest() {
+        Long accountId = accountService.save(new Account(null, "Ledger Slow", new BigDecimal("1.00"))).getId();
+        long[] recorded = new long[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            ledger.record(accountId, 100);
+            recorded[0] = System.currentTimeMillis();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Long at = jdbcTemplate.queryForObject("select max(at) from ledger_entries where account_id=? and amount=100",
+                Long.class, accountId);
+        assertTrue(at >= recorded[0] + 50, "stamped at " + at + ", recorded at " + recorded[0]);
+    }
+
+    private void assertBalance(String expected, Long accountId, Instant at) {
+        BigDecimal balance = accountService.balanceAt(accountId, at).orElseThrow();
+        assertEquals(0, new BigDecimal(expected).compareTo(balance), accountId + " at " + at + " was " + balance);
+    }
+
+    // Keeps every change on its own millisecond, so an instant falls strictly between two of them.
+    private static Instant tick() throws InterruptedException {
+        Thread.sleep(2);
+        Instant now = Instant.now();
+        Thread.sleep(2);
+        return now;
+    }
+}
@@ -0,0 +1,62 @@
+package com.junit.app;
+
+import com.junit.app.models.Account;
+import com.junit.app.services.AccountCache;
+import com.junit.app.services.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * The replica is a separate database holding an older copy of the accounts, as one lagging behind the
+ * primary would. Reads go through the service and JPA, so routing decides where each one lands.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.replicas[0].url=" + ReplicaCacheTest.REPLICA_URL,
+        "app.datasource.replicas[0].username=sa",
+        "app.datasource.replicas[0].password="})
+@DirtiesContext
+class ReplicaCacheTest {
+    static final String REPLICA_URL = "jdbc:h2:mem:stale-replica;DB_CLOSE_DELAY=-1";
+
+    static {
+        JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+        replica.execute("create table if not exists accounts (id bigint primary key, name varchar(255), "
+                + "balance numeric(38, 2), version bigint not null)");
+        replica.update("delete from accounts");
+        replica.update("insert into accounts values (1, 'Kevin', 1000, 0), (2, 'Brando', 2000, 0)");
+    }
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountCache accountCache;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void replicaReadIsNotCachedTest() {
+        Account kevin = accountService.findById(1L);
+        kevin.setBalance(new BigDecimal("400.00"));
+        accountService.save(kevin);
+
+        // The stale replica answers the read-only lookup, and its answer is not kept.
+        assertEquals(0, new BigDecimal("1000").compareTo(accountService.findById(1L).getBalance()));
+        assertNull(accountCache.get(1L));
+
+        // Inside a write transaction the lookup reads the primary, which is safe to cache.
+        Account fresh = transactionTemplate.execute(status -> accountService.findById(1L));
+        assertEquals(0, new BigDecimal("400.00").compareTo(fresh.getBalance()));
+        assertEquals(0, new BigDecimal("400.00").compareTo(accountCache.get(1L).getBalance()));
+        assertEquals(0, new BigDecimal("400.00").compareTo(accountService.findById(1L).getBalance()));
+    }
+}
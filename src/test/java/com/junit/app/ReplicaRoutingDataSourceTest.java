@@ -0,0 +1,110 @@
+package com.junit.app;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Separate in-memory H2 databases stand in for the primary and its replicas; each one knows its own
+ * name, so a query shows where a transaction was routed.
+ */
+class ReplicaRoutingDataSourceTest {
+    private ReplicaRoutingDataSource dataSource;
+    private TransactionTemplate writes;
+    private TransactionTemplate reads;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = database("primary");
+        List<DataSource> replicas = List.of(database("replica1"), database("replica2"),
+                new DriverManagerDataSource("jdbc:h2:mem:replica-down;IFEXISTS=TRUE", "sa", ""));
+        dataSource = new ReplicaRoutingDataSource(primary, replicas, List.of(2, 1, 1), 60_000);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writes = new TransactionTemplate(transactionManager);
+        reads = new TransactionTemplate(transactionManager);
+        reads.setReadOnly(true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void routingTest() {
+        List<String> served = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            served.add(reads.execute(status -> node()));
+        }
+        Map<String, Long> counts = served.stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        // replica-down takes one slot in four; its share falls over to the next slot, replica1.
+        assertEquals(Map.of("replica1", 6L, "replica2", 2L), counts);
+        assertEquals(List.of(0, 1), dataSource.healthyReplicas());
+
+        assertEquals("primary", writes.execute(status -> node()));
+        assertEquals("primary", node());
+    }
+
+    @Test
+    void readYourWritesTest() throws Exception {
+        ReadYourWritesFilter filter = new ReadYourWritesFilter(60_000);
+        List<String> served = new ArrayList<>();
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), response, (request, ignored) -> {
+            served.add(reads.execute(status -> node()));
+            served.add(writes.execute(status -> node()));
+            served.add(reads.execute(status -> node()));
+        });
+        Cookie fence = response.getCookie("primary-until");
+        assertNotNull(fence);
+
+        MockHttpServletRequest fenced = new MockHttpServletRequest();
+        fenced.setCookies(fence);
+        filter.doFilter(fenced, new MockHttpServletResponse(), (request, ignored) -> served.add(reads.execute(status -> node())));
+
+        MockHttpServletResponse unfencedResponse = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), unfencedResponse,
+                (request, ignored) -> served.add(reads.execute(status -> node())));
+
+        assertEquals("primary", served.get(1));
+        assertEquals("primary", served.get(2));
+        assertEquals("primary", served.get(3));
+        assertEquals("replica", served.get(4).substring(0, 7));
+        assertNull(unfencedResponse.getCookie("primary-until"));
+    }
+
+    private String node() {
+        return jdbcTemplate.queryForObject("select name from node", String.class);
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists node (name varchar(20))");
+        jdbcTemplate.update("delete from node");
+        jdbcTemplate.update("insert into node values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,164 @@
+package com.junit.app;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.ScheduledTransfer;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.repositories.ScheduledTransferRepository;
+import com.junit.app.services.AccountService;
+import com.junit.app.services.ScheduledTransfers;
+import com.junit.app.services.Shards;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "app.transfers.scheduled.tick-ms=5")
+@DirtiesContext
+class ScheduledTransfersTest {
+    @Autowired
+    private ScheduledTransfers scheduledTransfers;
+    @Autowired
+    private ScheduledTransferRepository scheduledTransferRepository;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private Shards shards;
+
+    @Test
+    void scheduleTest() throws Exception {
+        Long a = accountService.save(new Account(null, "Payroll", new BigDecimal("100.00"))).getId();
+        Long b = accountService.save(new Account(null, "Employee", new BigDecimal("0.00"))).getId();
+
+        Instant dueAt = Instant.now().plusMillis(300);
+        ScheduledTransfer scheduled = scheduledTransfers.schedule(transaction(a, b, "60.00"), dueAt);
+        ScheduledTransfer cancelled = scheduledTransfers.schedule(transaction(a, b, "1.00"), dueAt);
+        ScheduledTransfer overdrawn = scheduledTransfers.schedule(transaction(a, b, "60.00"), dueAt.plusMillis(50));
+        assertTrue(scheduledTransfers.cancel(cancelled.getId()));
+        assertEquals(ScheduledTransfer.State.PENDING, state(scheduled.getId()));
+
+        ScheduledTransfer done = await(scheduled.getId());
+        ScheduledTransfer failed = await(overdrawn.getId());
+        assertEquals(ScheduledTransfer.State.DONE, done.getState());
+        assertFalse(done.getExecutedAt().isBefore(dueAt));
+        assertEquals(ScheduledTransfer.State.FAILED, failed.getState());
+        assertEquals("Not enough money for the account", failed.getMessage());
+        assertEquals(ScheduledTransfer.State.CANCELLED, state(cancelled.getId()));
+        assertFalse(scheduledTransfers.cancel(scheduled.getId()));
+        assertEquals(0, new BigDecimal("40.00").compareTo(accountService.reviewBalance(a)));
+        assertEquals(0, new BigDecimal("60.00").compareTo(accountService.reviewBalance(b)));
+    }
+
+    @Test
+    void catchUpTest() throws Exception {
+        Long a = accountService.save(new Account(null, "Standing order", new BigDecimal("10.00"))).getId();
+        Long b = accountService.save(new Account(null, "Landlord", new BigDecimal("0.00"))).getId();
+
+        // Missed while the service was down: written behind the running instance, which has loaded past them.
+        Instant missedAt = Instant.now().minus(1, ChronoUnit.HOURS);
+        Long first = save(a, b, "4.00", missedAt, ScheduledTransfer.State.PENDING, null);
+        Long second = save(a, b, "5.00", missedAt.plusSeconds(60), ScheduledTransfer.State.PENDING, null);
+        Long interrupted = save(a, b, "1.00", missedAt, ScheduledTransfer.State.RUNNING, missedAt);
+        // Still claimed by another instance that is working on it.
+        Long claimed = save(a, b, "2.00", missedAt, ScheduledTransfer.State.RUNNING, Instant.now().plus(1, ChronoUnit.HOURS));
+
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ScheduledTransfers restarted = new ScheduledTransfers(scheduledTransferRepository, accountService, shards,
+                registry, 5, 512, 3_600_000, 500, 1_000, 600_000, 2);
+        try {
+            restarted.start();
+            assertEquals(ScheduledTransfer.State.DONE, await(first).getState());
+            assertEquals(ScheduledTransfer.State.DONE, await(second).getState());
+        } finally {
+            restarted.close();
+        }
+        ScheduledTransfer failed = scheduledTransferRepository.findById(interrupted).orElseThrow();
+        assertEquals(ScheduledTransfer.State.FAILED, failed.getState());
+        assertEquals("Interrupted before completion; check the account history", failed.getMessage());
+        assertEquals(ScheduledTransfer.State.RUNNING, state(claimed));
+        assertEquals(0, new BigDecimal("1.00").compareTo(accountService.reviewBalance(a)));
+        assertEquals(2, registry.get("transfers.scheduled.lag").timer().count());
+        assertTrue(registry.get("transfers.scheduled.lag").timer().max(TimeUnit.MINUTES) >= 59);
+        assertEquals(2.0, registry.get("transfers.scheduled").tag("outcome", "done").counter().count());
+    }
+
+    @Test
+    void rolledBackBatchTest() throws Exception {
+        Long a = accountService.save(new Account(null, "Retried order", new BigDecimal("10.00"))).getId();
+        Long b = accountService.save(new Account(null, "Supplier", new BigDecimal("0.00"))).getId();
+        Instant dueAt = Instant.now().minus(1, ChronoUnit.HOURS);
+        Long good = save(a, b, "3.00", dueAt, ScheduledTransfer.State.PENDING, null);
+        Long bad = save(a, b, "6.66", dueAt, ScheduledTransfer.State.PENDING, null);
+
+        // Any batch holding the bad transfer fails the way a deterministic error rolls back its shard transaction.
+        AccountService failing = mock(AccountService.class);
+        when(failing.transferAll(any())).then(invocation -> {
+            List<TransactionDTO> transactions = invocation.getArgument(0);
+            if (transactions.stream().anyMatch(transaction -> transaction.getAmount().compareTo(new BigDecimal("6.66")) == 0)) {
+                throw new ArithmeticException("long overflow");
+            }
+            return accountService.transferAll(transactions);
+        });
+        ScheduledTransfers restarted = new ScheduledTransfers(scheduledTransferRepository, failing, shards,
+                new SimpleMeterRegistry(), 5, 512, 3_600_000, 500, 1_000, 600_000, 2);
+        try {
+            restarted.start();
+            assertEquals(ScheduledTransfer.State.DONE, await(good).getState());
+            ScheduledTransfer failed = await(bad);
+            assertEquals(ScheduledTransfer.State.FAILED, failed.getState());
+            assertEquals("Transfer failed", failed.getMessage());
+        } finally {
+            restarted.close();
+        }
+        // The whole batch once, then each transfer on its own: the bad one is not retried again.
+        verify(failing, times(3)).transferAll(any());
+        assertEquals(0, new BigDecimal("7.00").compareTo(accountService.reviewBalance(a)));
+        assertEquals(0, new BigDecimal("3.00").compareTo(accountService.reviewBalance(b)));
+    }
+
+    private Long save(Long origin, Long destination, String amount, Instant dueAt, ScheduledTransfer.State state,
+                      Instant claimedUntil) {
+        return scheduledTransferRepository.save(new ScheduledTransfer(null, origin, destination, 1L,
+                new BigDecimal(amount), dueAt, state, null, null, claimedUntil == null ? null : "other", claimedUntil)).getId();
+    }
+
+    private ScheduledTransfer await(Long id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            ScheduledTransfer transfer = scheduledTransferRepository.findById(id).orElseThrow();
+            if (transfer.getState() == ScheduledTransfer.State.DONE || transfer.getState() == ScheduledTransfer.State.FAILED) {
+                return transfer;
+            }
+            Thread.sleep(50);
+        }
+        return scheduledTransferRepository.findById(id).orElseThrow();
+    }
+
+    private ScheduledTransfer.State state(Long id) {
+        return scheduledTransferRepository.findById(id).orElseThrow().getState();
+    }
+
+    private static TransactionDTO transaction(Long origin, Long destination, String amount) {
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setOriginAccountId(origin);
+        transaction.setDestinationAccountId(destination);
+        transaction.setAmount(new BigDecimal(amount));
+        transaction.setBankId(1L);
+        return transaction;
+    }
+}
@@ -0,0 +1,132 @@
+package com.junit.app;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.TransferSaga;
+import com.junit.app.services.AccountService;
+import com.junit.app.services.Shards;
+import com.junit.app.services.TransferSagas;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two in-memory H2 databases: the primary is shard 0 and {@code shard1} is shard 1. Rows are checked
+ * on each database directly, with the shard bound to the thread.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.shards[0].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "app.datasource.shards[0].username=sa",
+        "app.datasource.shards[0].password=",
+        "app.transfers.rate-limit.enabled=false",
+        "app.shards.saga.recovery-after-ms=0",
+        "app.shards.saga.recovery-interval-ms=3600000"})
+@DirtiesContext
+class ShardingTest {
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransferSagas transferSagas;
+    @Autowired
+    private Shards shards;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void placementTest() {
+        Account first = accountService.save(new Account(null, "Shard A", new BigDecimal("10.00")));
+        Account second = accountService.save(new Account(null, "Shard B", new BigDecimal("20.00")));
+        int firstShard = shards.shardOf(first.getId());
+        int secondShard = shards.shardOf(second.getId());
+
+        assertEquals(2, shards.count());
+        assertNotEquals(firstShard, secondShard);
+        assertEquals(1, rows(firstShard, first.getId()));
+        assertEquals(0, rows(secondShard, first.getId()));
+        assertEquals(1, rows(secondShard, second.getId()));
+        // Seed accounts stay on the shard owning their block.
+        assertEquals(1, rows(0, 1L));
+        assertEquals(0, rows(1, 1L));
+
+        List<Long> ids = accountService.findAll().stream().map(Account::getId).collect(Collectors.toList());
+        assertTrue(ids.containsAll(List.of(1L, 2L, first.getId(), second.getId())));
+        assertEquals(ids.stream().sorted().collect(Collectors.toList()), ids);
+        assertEquals(second.getId(), accountService.findByName("Shard B").orElseThrow().getId());
+        assertEquals(new BigDecimal("20.00"), accountService.findById(second.getId()).getBalance());
+    }
+
+    @Test
+    void crossShardTransferTest() {
+        Account origin = accountService.save(new Account(null, "Saga Origin", new BigDecimal("100.00")));
+        Account destination = accountService.save(new Account(null, "Saga Destination", new BigDecimal("0.00")));
+        assertNotEquals(shards.shardOf(origin.getId()), shards.shardOf(destination.getId()));
+
+        accountService.transfer(origin.getId(), destination.getId(), new BigDecimal("40.00"), 1L);
+
+        assertEquals(0, new BigDecimal("60.00").compareTo(balance(origin.getId())));
+        assertEquals(0, new BigDecimal("40.00").compareTo(balance(destination.getId())));
+        assertEquals("COMPLETED", sagaState(shards.shardOf(origin.getId()), origin.getId()));
+        assertEquals("CREDITED", sagaState(shards.shardOf(destination.getId()), origin.getId()));
+    }
+
+    @Test
+    void compensationTest() {
+        Account origin = accountService.save(new Account(null, "Saga Refund", new BigDecimal("100.00")));
+        int otherShard = 1 - shards.shardOf(origin.getId());
+        Long missing = 1 + (long) Shards.BLOCK_SIZE * (10_000 + otherShard);
+        assertEquals(otherShard, shards.shardOf(missing));
+
+        assertThrows(NoSuchElementException.class,
+                () -> accountService.transfer(origin.getId(), missing, new BigDecimal("30.00"), 1L));
+
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(origin.getId())));
+        assertEquals("COMPENSATED", sagaState(shards.shardOf(origin.getId()), origin.getId()));
+    }
+
+    @Test
+    void recoveryTest() {
+        Account origin = accountService.save(new Account(null, "Crash Origin", new BigDecimal("100.00")));
+        Account destination = accountService.save(new Account(null, "Crash Destination", new BigDecimal("0.00")));
+        int originShard = shards.shardOf(origin.getId());
+        // The process died after the debit committed and before the destination was credited.
+        Shards.on(originShard, () -> {
+            jdbcTemplate.update("update accounts set balance = balance - 25 where id=?", origin.getId());
+            return jdbcTemplate.update("insert into transfer_sagas(id, origin_account_id, destination_account_id, "
+                            + "bank_id, amount, state, created_at) values ('crashed', ?, ?, 1, 25, 'PENDING', 0)",
+                    origin.getId(), destination.getId());
+        });
+
+        List<TransferSaga> settled = transferSagas.recover();
+
+        assertEquals(1, settled.size());
+        assertEquals(TransferSaga.State.COMPLETED, settled.get(0).getState());
+        assertEquals(0, new BigDecimal("75.00").compareTo(balance(origin.getId())));
+        assertEquals(0, new BigDecimal("25.00").compareTo(balance(destination.getId())));
+        assertTrue(transferSagas.recover().isEmpty());
+    }
+
+    private int rows(int shard, Long id) {
+        return Shards.on(shard, () -> jdbcTemplate.queryForObject("select count(*) from accounts where id=?", Integer.class, id));
+    }
+
+    private BigDecimal balance(Long id) {
+        return Shards.on(shards.shardOf(id),
+                () -> jdbcTemplate.queryForObject("select balance from accounts where id=?", BigDecimal.class, id));
+    }
+
+    private String sagaState(int shard, Long originAccountId) {
+        return Shards.on(shard, () -> jdbcTemplate.queryForObject(
+                "select state from transfer_sagas where origin_account_id=?", String.class, originAccountId));
+    }
+}
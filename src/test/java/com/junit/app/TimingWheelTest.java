@@ -0,0 +1,62 @@
+package com.junit.app;
+
+import com.junit.app.services.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A wheel of 8 slots of 10ms: level 0 spans 80ms, level 1 640ms and level 2 5.12s, so timers further
+ * out have to cascade down one or two levels before they expire.
+ */
+class TimingWheelTest {
+
+    @Test
+    void expiryTest() {
+        TimingWheel<String> wheel = new TimingWheel<>(10, 8, 1_000);
+        assertTrue(wheel.add(4_000, "level 2"));
+        assertTrue(wheel.add(1_015, "level 0"));
+        assertTrue(wheel.add(1_300, "level 1"));
+        assertTrue(wheel.add(1_305, "level 1, same slot"));
+        assertTrue(wheel.add(1_000, "this tick"));
+        assertFalse(wheel.add(999, "overdue"));
+        assertEquals(5, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1_009, expired::add);
+        assertEquals(List.of(), expired);
+        wheel.advance(1_010, expired::add);
+        assertEquals(List.of("this tick"), expired);
+        wheel.advance(1_299, expired::add);
+        assertEquals(List.of("this tick", "level 0"), expired);
+        wheel.advance(1_310, expired::add);
+        assertEquals(List.of("this tick", "level 0", "level 1", "level 1, same slot"), expired);
+        wheel.advance(3_999, expired::add);
+        assertEquals(4, expired.size());
+        wheel.advance(4_010, expired::add);
+        assertEquals("level 2", expired.get(4));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void idleJumpTest() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 8, 0);
+        wheel.advance(1_000_005, item -> { });
+        assertEquals(1_000_000, wheel.currentTime());
+
+        List<Integer> expired = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            assertTrue(wheel.add(1_000_000 + i * 7L, i));
+        }
+        wheel.advance(1_010_000, expired::add);
+        assertEquals(1_000, expired.size());
+        for (int i = 1; i < expired.size(); i++) {
+            assertTrue(expired.get(i - 1) < expired.get(i));
+        }
+    }
+}
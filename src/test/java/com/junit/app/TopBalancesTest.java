@@ -0,0 +1,79 @@
+package com.junit.app;
+
+import com.junit.app.repositories.AccountRepository;
+import com.junit.app.services.TopBalances;
+import com.junit.app.services.Shards;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class TopBalancesTest {
+    private TopBalances topBalances;
+
+    @BeforeEach
+    void setUp() {
+        topBalances = new TopBalances(mock(AccountRepository.class), mock(Shards.class));
+        topBalances.put(1L, new BigDecimal("1000"));
+        topBalances.put(2L, new BigDecimal("2000"));
+        topBalances.put(3L, new BigDecimal("1000"));
+    }
+
+    @Test
+    void orderTest() {
+        assertEquals(List.of(2L, 1L, 3L), ids(10));
+        assertEquals(List.of(2L, 1L), ids(2));
+        assertEquals(new BigDecimal("2000.00"), topBalances.top(1).get(0).getValue());
+    }
+
+    @Test
+    void updateTest() {
+        topBalances.add(3L, 150000);
+        topBalances.add(2L, -150000);
+        topBalances.add(9L, 100);
+        assertEquals(List.of(3L, 1L, 2L), ids(10));
+        assertEquals(new BigDecimal("2500.00"), topBalances.top(1).get(0).getValue());
+
+        topBalances.put(1L, new BigDecimal("9999.99"));
+        topBalances.remove(3L);
+        assertEquals(List.of(1L, 2L), ids(10));
+    }
+
+    @Test
+    void concurrentDeltasTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    topBalances.add(1L, -1);
+                    topBalances.add(3L, 1);
+                    topBalances.add(2L, i % 2 == 0 ? 5 : -5);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(List.of(2L, 3L, 1L), ids(10));
+        assertEquals(new BigDecimal("2000.00"), topBalances.top(1).get(0).getValue());
+        assertEquals(new BigDecimal("1400.00"), topBalances.top(2).get(1).getValue());
+        assertEquals(new BigDecimal("600.00"), topBalances.top(3).get(2).getValue());
+    }
+
+    private List<Long> ids(int n) {
+        return topBalances.top(n).stream().map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,63 @@
+package com.junit.app;
+
+import com.junit.app.exceptions.TransferOverloaded;
+import com.junit.app.exceptions.TransferRateLimited;
+import com.junit.app.services.TransferAdmission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferAdmissionTest {
+
+    @Test
+    void rateLimitTest() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("app.transfers.rate-limit.banks.2.per-second", "1")
+                .withProperty("app.transfers.rate-limit.banks.2.burst", "1");
+        TransferAdmission admission = new TransferAdmission(environment, new SimpleMeterRegistry(),
+                true, 1, 2, 0, 0, 64, 500);
+        AtomicInteger transfers = new AtomicInteger();
+
+        admission.run(1L, 1L, transfers::incrementAndGet);
+        admission.run(1L, 1L, transfers::incrementAndGet);
+        TransferRateLimited limited = assertThrows(TransferRateLimited.class,
+                () -> admission.run(1L, 1L, transfers::incrementAndGet));
+        assertEquals(1, limited.getRetryAfterSeconds());
+
+        admission.run(2L, 2L, transfers::incrementAndGet);
+        assertThrows(TransferRateLimited.class, () -> admission.run(3L, 2L, transfers::incrementAndGet));
+        admission.run(4L, 1L, transfers::incrementAndGet);
+        assertEquals(4, transfers.get());
+    }
+
+    @Test
+    void sheddingTest() {
+        TransferAdmission admission = new TransferAdmission(new MockEnvironment(), new SimpleMeterRegistry(),
+                true, 0, 0, 0, 0, 0, 50);
+        AtomicInteger transfers = new AtomicInteger();
+
+        admission.run(1L, 1L, transfers::incrementAndGet);
+        admission.refresh();
+        admission.run(1L, 1L, transfers::incrementAndGet);
+        admission.run(1L, 1L, () -> {
+            transfers.incrementAndGet();
+            sleep(100);
+        });
+        admission.refresh();
+        assertThrows(TransferOverloaded.class, () -> admission.run(1L, 1L, transfers::incrementAndGet));
+        assertEquals(3, transfers.get());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.junit.app;
+
+import com.junit.app.exceptions.NotEnoughMoney;
+import com.junit.app.models.Account;
+import com.junit.app.repositories.AccountRepository;
+import com.junit.app.services.AccountService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("integration_concurrency")
+@SpringBootTest(properties = "app.transfers.rate-limit.enabled=false")
+@DirtiesContext
+@Slf4j
+public class TransferConcurrencyTest {
+    private static final int ACCOUNTS = 10;
+    private static final int THREADS = 8;
+    private static final int TRANSFERS_PER_THREAD = 250;
+    // Throughput depends on the machine, so the floor is only checked when a run asks for it with
+    // -Dtransfers.min-per-second=...; otherwise the measurement is just logged.
+    private static final double MIN_TRANSFERS_PER_SECOND = Double.parseDouble(System.getProperty("transfers.min-per-second", "0"));
+
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Test
+    void concurrentTransfersConserveMoneyTest() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids.add(accountRepository.save(new Account(null, "Stress" + i, new BigDecimal("1000"))).getId());
+        }
+        BigDecimal initialTotal = totalBalance();
+        int initialTransfers = accountService.reviewTotalTransfers(1L);
+
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    Long origin = ids.get(random.nextInt(ids.size()));
+                    Long destination = ids.get(random.nextInt(ids.size()));
+                    BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 300));
+                    try {
+                        accountService.transfer(origin, destination, amount, 1L);
+                        completed.incrementAndGet();
+                    } catch (NotEnoughMoney e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+        executor.shutdown();
+
+        double transfersPerSecond = (completed.get() + rejected.get()) / seconds;
+        log.info("{} transfers ({} rejected) in {}s: {} transfers/s", completed.get() + rejected.get(), rejected.get(),
+                String.format("%.2f", seconds), String.format("%.0f", transfersPerSecond));
+
+        assertEquals(THREADS * TRANSFERS_PER_THREAD, completed.get() + rejected.get());
+        assertEquals(0, initialTotal.compareTo(totalBalance()));
+        assertEquals(initialTransfers + completed.get(), accountService.reviewTotalTransfers(1L));
+        if (MIN_TRANSFERS_PER_SECOND > 0) {
+            assertTrue(transfersPerSecond >= MIN_TRANSFERS_PER_SECOND,
+                    "Expected at least " + MIN_TRANSFERS_PER_SECOND + " transfers/s but got " + transfersPerSecond);
+        }
+    }
+
+    private BigDecimal totalBalance() {
+        return accountRepository.findAll().stream()
+                .map(Account::getBalance)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
@@ -0,0 +1,113 @@
+package com.junit.app;
+
+import com.junit.app.models.JournalEntry;
+import com.junit.app.services.TransferJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransferJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayTest() throws IOException {
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.open(() -> Map.of(1L, 100000L, 2L, 200000L));
+            journal.appendTransfer(1L, 2L, 1L, 10000);
+            journal.appendTransfer(2L, 1L, 1L, 2550);
+            journal.appendAdjustment(3L, 50000);
+            assertEquals(Map.of(1L, 92550L, 2L, 207450L, 3L, 50000L), journal.balances());
+        }
+
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.open(Map::of);
+            assertEquals(Map.of(1L, 92550L, 2L, 207450L, 3L, 50000L), journal.balances());
+            assertEquals(3, journal.lastSequence());
+            assertEquals(4, journal.appendClose(3L));
+            assertEquals(5, journal.appendTransfer(1L, 2L, 1L, 550));
+        }
+
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.open(Map::of);
+            assertEquals(Map.of(1L, 92000L, 2L, 208000L), journal.balances());
+        }
+    }
+
+    @Test
+    void snapshotAndSegmentRollTest() throws IOException {
+        // Room for three records per segment.
+        int segmentBytes = 3 * 56;
+        try (TransferJournal journal = new TransferJournal(directory, segmentBytes)) {
+            journal.open(() -> Map.of(1L, 1000L, 2L, 0L));
+            for (int i = 0; i < 5; i++) {
+                journal.appendTransfer(1L, 2L, 1L, 10);
+            }
+            journal.snapshot();
+            for (int i = 0; i < 4; i++) {
+                journal.appendTransfer(2L, 1L, 1L, 5);
+            }
+        }
+        assertEquals(3, files(".seg").size());
+
+        try (TransferJournal journal = new TransferJournal(directory, segmentBytes)) {
+            journal.open(Map::of);
+            assertEquals(Map.of(1L, 970L, 2L, 30L), journal.balances());
+            assertEquals(9, journal.lastSequence());
+
+            List<JournalEntry> entries = journal.read(4, 4);
+            assertEquals(4, entries.size());
+            assertEquals(4, entries.get(0).getSequence());
+            assertEquals(7, entries.get(3).getSequence());
+            assertEquals("TRANSFER", entries.get(3).getType());
+            assertEquals(2L, entries.get(3).getAccountId());
+            assertEquals(1L, entries.get(3).getDestinationAccountId());
+            assertEquals("0.05", entries.get(3).getAmount().toPlainString());
+            assertTrue(journal.read(10, 5).isEmpty());
+        }
+    }
+
+    @Test
+    void tornRecordTest() throws IOException {
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.open(() -> Map.of(1L, 1000L, 2L, 0L));
+            journal.appendTransfer(1L, 2L, 1L, 100);
+            journal.appendTransfer(1L, 2L, 1L, 200);
+        }
+        try (RandomAccessFile segment = new RandomAccessFile(files(".seg").get(0).toFile(), "rw")) {
+            // Flip a byte of the second record's amount, as a crash mid-write would.
+            segment.seek(56 + 50);
+            segment.write(0x7f);
+        }
+
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.open(Map::of);
+            assertEquals(Map.of(1L, 900L, 2L, 100L), journal.balances());
+            assertEquals(2, journal.appendTransfer(2L, 1L, 1L, 50));
+        }
+        try (TransferJournal journal = new TransferJournal(directory, 1 << 20)) {
+            journal.open(Map::of);
+            assertEquals(Map.of(1L, 950L, 2L, 50L), journal.balances());
+            List<JournalEntry> entries = journal.read(1, 10);
+            assertEquals(2, entries.size());
+            assertEquals(1L, entries.get(1).getDestinationAccountId());
+        }
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+        }
+    }
+}
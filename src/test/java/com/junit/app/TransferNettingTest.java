@@ -0,0 +1,76 @@
+package com.junit.app;
+
+import com.junit.app.exceptions.NotEnoughMoney;
+import com.junit.app.models.Account;
+import com.junit.app.services.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Transfers between one pair are submitted a few milliseconds apart, well inside one netting window, and
+ * settle together in arrival order.
+ */
+@SpringBootTest(properties = {
+        "app.transfers.rate-limit.enabled=false",
+        "app.transfers.netting.enabled=true",
+        "app.transfers.netting.window-ms=1000"})
+@DirtiesContext
+class TransferNettingTest {
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void nettingTest() throws Exception {
+        Long a = accountService.save(new Account(null, "Netting A", new BigDecimal("10.00"))).getId();
+        Long b = accountService.save(new Account(null, "Netting B", new BigDecimal("0.00"))).getId();
+        int transfersBefore = accountService.reviewTotalTransfers(1L);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            futures.add(executor.submit(() -> accountService.transfer(a, b, new BigDecimal("10.00"), 1L)));
+            Thread.sleep(30);
+            // Only 0.00 left in A at this step, although A ends the window with money.
+            futures.add(executor.submit(() -> accountService.transfer(a, b, new BigDecimal("5.00"), 1L)));
+            Thread.sleep(30);
+            futures.add(executor.submit(() -> accountService.transfer(b, a, new BigDecimal("7.00"), 1L)));
+            Thread.sleep(30);
+            futures.add(executor.submit(() -> accountService.transfer(a, b, new BigDecimal("5.00"), 1L)));
+            futures.get(0).get();
+            ExecutionException rejected = assertThrows(ExecutionException.class, () -> futures.get(1).get());
+            assertInstanceOf(NotEnoughMoney.class, rejected.getCause());
+            futures.get(2).get();
+            futures.get(3).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(0, new BigDecimal("2.00").compareTo(accountService.reviewBalance(a)));
+        assertEquals(0, new BigDecimal("8.00").compareTo(accountService.reviewBalance(b)));
+        assertEquals(transfersBefore + 3, accountService.reviewTotalTransfers(1L));
+        // One settlement: the opening entry plus a single net entry for A, and a single net entry for B.
+        assertEquals(2, ledgerEntries(a));
+        assertEquals(1, ledgerEntries(b));
+    }
+
+    private int ledgerEntries(Long accountId) {
+        return jdbcTemplate.queryForObject("select count(*) from ledger_entries where account_id=?", Integer.class, accountId);
+    }
+}
@@ -0,0 +1,120 @@
+package com.junit.app;
+
+import com.junit.app.exceptions.TransferQueueFull;
+import com.junit.app.models.QueuedTransfer;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
+import com.junit.app.services.AccountService;
+import com.junit.app.services.Shards;
+import com.junit.app.services.TransferQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransferQueueTest {
+
+    @Test
+    void batchedTransfersTest() throws Exception {
+        AccountService accountService = mock(AccountService.class);
+        when(accountService.transferAll(any())).then(invocation -> {
+            List<TransactionDTO> transactions = invocation.getArgument(0);
+            return transactions.stream()
+                    .map(transaction -> transaction.getAmount().compareTo(new BigDecimal("1000")) > 0
+                            ? new TransferResult(transaction, "ERROR", "Not enough money for the account")
+                            : new TransferResult(transaction, "OK", "Transfer done successfully"))
+                    .collect(Collectors.toList());
+        });
+        TransferQueue transferQueue = new TransferQueue(accountService, mock(Shards.class), new SimpleMeterRegistry(), 10, 5, 50, 1, 100);
+
+        QueuedTransfer ok = transferQueue.submit(transaction("100"));
+        QueuedTransfer rejected = transferQueue.submit(transaction("5000"));
+        assertEquals(TransferQueue.PENDING, transferQueue.find(ok.getId()).orElseThrow().getStatus());
+
+        transferQueue.start();
+        transferQueue.stop();
+
+        assertEquals("OK", transferQueue.find(ok.getId()).orElseThrow().getStatus());
+        assertEquals("ERROR", transferQueue.find(rejected.getId()).orElseThrow().getStatus());
+        assertEquals("Not enough money for the account", transferQueue.find(rejected.getId()).orElseThrow().getMessage());
+        assertTrue(transferQueue.find("missing").isEmpty());
+        verify(accountService, times(1)).transferAll(any());
+    }
+
+    @Test
+    void rolledBackBatchTest() throws Exception {
+        // On one shard the batch rolled back as a whole, so each transfer is tried again on its own.
+        AccountService accountService = mock(AccountService.class);
+        when(accountService.transferAll(any())).then(invocation -> {
+            List<TransactionDTO> transactions = invocation.getArgument(0);
+            if (transactions.stream().anyMatch(transaction -> transaction.getAmount().compareTo(new BigDecimal("666")) == 0)) {
+                throw new ArithmeticException("long overflow");
+            }
+            return transactions.stream()
+                    .map(transaction -> new TransferResult(transaction, "OK", "Transfer done successfully"))
+                    .collect(Collectors.toList());
+        });
+        TransferQueue transferQueue = new TransferQueue(accountService, mock(Shards.class), new SimpleMeterRegistry(), 10, 5, 50, 1, 100);
+
+        QueuedTransfer ok = transferQueue.submit(transaction("100"));
+        QueuedTransfer bad = transferQueue.submit(transaction("666"));
+        transferQueue.start();
+        transferQueue.stop();
+
+        assertEquals("OK", transferQueue.find(ok.getId()).orElseThrow().getStatus());
+        assertEquals("ERROR", transferQueue.find(bad.getId()).orElseThrow().getStatus());
+        assertEquals("Transfer failed", transferQueue.find(bad.getId()).orElseThrow().getMessage());
+        verify(accountService, times(3)).transferAll(any());
+    }
+
+    @Test
+    void interruptedBatchTest() throws Exception {
+        // Across shards some transfers may have committed before the failure, so none is reported as failed.
+        AccountService accountService = mock(AccountService.class);
+        when(accountService.transferAll(any())).thenThrow(new IllegalStateException("Connection lost"));
+        Shards shards = mock(Shards.class);
+        when(shards.shardOf(2L)).thenReturn(1);
+        TransferQueue transferQueue = new TransferQueue(accountService, shards, new SimpleMeterRegistry(), 10, 5, 50, 1, 100);
+
+        QueuedTransfer first = transferQueue.submit(transaction("100"));
+        QueuedTransfer second = transferQueue.submit(transaction("200"));
+        transferQueue.start();
+        transferQueue.stop();
+
+        assertEquals(TransferResult.INTERRUPTED, transferQueue.find(first.getId()).orElseThrow().getStatus());
+        assertEquals(TransferResult.INTERRUPTED, transferQueue.find(second.getId()).orElseThrow().getStatus());
+        assertEquals("Interrupted before completion; check the account history",
+                transferQueue.find(first.getId()).orElseThrow().getMessage());
+        verify(accountService, times(1)).transferAll(any());
+    }
+
+    @Test
+    void queueFullTest() {
+        TransferQueue transferQueue = new TransferQueue(mock(AccountService.class), mock(Shards.class), new SimpleMeterRegistry(), 2, 5, 50, 1, 100);
+
+        transferQueue.submit(transaction("100"));
+        transferQueue.submit(transaction("100"));
+
+        assertThrows(TransferQueueFull.class, () -> transferQueue.submit(transaction("100")));
+    }
+
+    private TransactionDTO transaction(String amount) {
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setOriginAccountId(1L);
+        transactionDTO.setDestinationAccountId(2L);
+        transactionDTO.setAmount(new BigDecimal(amount));
+        transactionDTO.setBankId(1L);
+        return transactionDTO;
+    }
+}
@@ -3,8 +3,20 @@ package com.junit.app.controllers;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.junit.app.Data;
 import com.junit.app.models.Account;
+import com.junit.app.models.AccountBalance;
 import com.junit.app.models.TransactionDTO;
+import com.junit.app.models.TransferResult;
+import com.junit.app.exceptions.TransferOverloaded;
+import com.junit.app.exceptions.TransferQueueFull;
+import com.junit.app.exceptions.TransferRateLimited;
+import com.junit.app.models.QueuedTransfer;
+import com.junit.app.models.ScheduledTransfer;
+import com.junit.app.models.ImportResult;
+import com.junit.app.services.AccountImportService;
 import com.junit.app.services.AccountService;
+import com.junit.app.services.ScheduledTransfers;
+import com.junit.app.services.TransferAdmission;
+import com.junit.app.services.TransferQueue;
 import lombok.extern.slf4j.Slf4j;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,31 +24,54 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(AccountController.class)
+@Import(AccountRequests.class)
 @Slf4j
 class AccountControllerTest {
     @Autowired
     private MockMvc mockMvc;
     @MockBean
     private AccountService accountService;
+    @MockBean
+    private TransferQueue transferQueue;
+    @MockBean
+    private TransferAdmission transferAdmission;
+    @MockBean
+    private AccountImportService accountImportService;
+    @MockBean
+    private ScheduledTransfers scheduledTransfers;
     private ObjectMapper objectMapper;
 
     @BeforeEach
@@ -123,4 +158,391 @@ class AccountControllerTest {
 
         verify(accountService).save(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void saveIfMatchTest() throws Exception {
+        Account account = new Account(1L, "Kevin", new BigDecimal("900"));
+        when(accountService.save(any())).then(invocation -> {
+            Account saved = invocation.getArgument(0);
+            if (saved.getVersion() != 3) {
+                throw new ObjectOptimisticLockingFailureException(Account.class, 1L);
+            }
+            saved.setVersion(4);
+            return saved;
+        });
+        when(accountService.overwrite(any())).thenThrow(new ObjectOptimisticLockingFailureException(Account.class, 1L));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts").contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", "\"3\"").content(objectMapper.writeValueAsString(account)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.balance", Matchers.is(900)));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts").contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", "\"2\"").content(objectMapper.writeValueAsString(account)))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts").contentType(MediaType.APPLICATION_JSON)
+                .header("If-Match", "W/\"3\"").content(objectMapper.writeValueAsString(account)))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(account)))
+                .andExpect(status().isConflict());
+
+        verify(accountService, times(2)).save(any());
+        verify(accountService).overwrite(any());
+    }
+
+    @Test
+    void transferBatchTest() throws Exception {
+        TransactionDTO transactionDTO1 = new TransactionDTO();
+        transactionDTO1.setAmount(new BigDecimal("100"));
+        transactionDTO1.setOriginAccountId(1L);
+        transactionDTO1.setDestinationAccountId(2L);
+        transactionDTO1.setBankId(1L);
+
+        TransactionDTO transactionDTO2 = new TransactionDTO();
+        transactionDTO2.setAmount(new BigDecimal("5000"));
+        transactionDTO2.setOriginAccountId(1L);
+        transactionDTO2.setDestinationAccountId(2L);
+        transactionDTO2.setBankId(1L);
+
+        List<TransactionDTO> transactions = Arrays.asList(transactionDTO1, transactionDTO2);
+        when(accountService.transferAll(any())).thenReturn(Arrays.asList(
+                new TransferResult(transactionDTO1, "OK", "Transfer done successfully"),
+                new TransferResult(transactionDTO2, "ERROR", "Not enough money for the account")));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transactions)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.status").value("OK"))
+                .andExpect(jsonPath("$.results", Matchers.hasSize(2)))
+                .andExpect(jsonPath("$.results[0].status").value("OK"))
+                .andExpect(jsonPath("$.results[1].status").value("ERROR"))
+                .andExpect(jsonPath("$.results[1].message").value("Not enough money for the account"))
+                .andExpect(jsonPath("$.results[1].transaction.amount").value(5000));
+
+        verify(accountService).transferAll(any());
+    }
+
+    @Test
+    void transferAdmissionTest() throws Exception {
+        TransactionDTO admitted = new TransactionDTO();
+        admitted.setAmount(new BigDecimal("100"));
+        admitted.setOriginAccountId(1L);
+        admitted.setDestinationAccountId(2L);
+        admitted.setBankId(1L);
+
+        TransactionDTO limited = new TransactionDTO();
+        limited.setAmount(new BigDecimal("100"));
+        limited.setOriginAccountId(2L);
+        limited.setDestinationAccountId(1L);
+        limited.setBankId(1L);
+
+        doThrow(new TransferRateLimited("Too many transfers for account 2", 3))
+                .when(transferAdmission).admit(2L, 1L);
+        when(accountService.transferAll(List.of(admitted))).thenReturn(List.of(
+                new TransferResult(admitted, "OK", "Transfer done successfully")));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(limited, admitted))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.results", Matchers.hasSize(2)))
+                .andExpect(jsonPath("$.results[0].status").value("RATE_LIMITED"))
+                .andExpect(jsonPath("$.results[0].retryAfterSeconds").value(3))
+                .andExpect(jsonPath("$.results[1].status").value("OK"))
+                .andExpect(jsonPath("$.results[1].retryAfterSeconds").doesNotExist());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer").param("async", "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(limited)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"));
+
+        verify(accountService).transferAll(List.of(admitted));
+        verify(transferQueue, never()).submit(any());
+    }
+
+    @Test
+    void listPageTest() throws Exception {
+        when(accountService.findPage(1L, 10)).thenReturn(Arrays.asList(Data.createAccount002().orElseThrow()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts")
+                .param("afterId", "1")
+                .param("limit", "10")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", Matchers.hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(2))
+                .andExpect(jsonPath("$[0].name").value("Brando"));
+
+        verify(accountService).findPage(1L, 10);
+        verify(accountService, never()).findAll();
+    }
+
+    @Test
+    void streamTest() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Account> action = invocation.getArgument(0);
+            action.accept(Data.createAccount001().orElseThrow());
+            action.accept(Data.createAccount002().orElseThrow());
+            return null;
+        }).when(accountService).streamAll(any());
+
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts")
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        objectMapper.writeValueAsString(Data.createAccount001().orElseThrow()) + "\n" +
+                        objectMapper.writeValueAsString(Data.createAccount002().orElseThrow()) + "\n"));
+
+        verify(accountService, never()).findAll();
+    }
+
+    @Test
+    void transferInvalidAmountTest() throws Exception {
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setAmount(new BigDecimal("10.005"));
+        transactionDTO.setOriginAccountId(1L);
+        transactionDTO.setDestinationAccountId(2L);
+        transactionDTO.setBankId(1L);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transactionDTO)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.status").value("ERROR"))
+                .andExpect(jsonPath("$.message").value("Amount must have at most 2 decimal places"));
+
+        transactionDTO.setAmount(new BigDecimal("-5"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transactionDTO)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Amount must be positive"));
+
+        verify(accountService, never()).transfer(any(), any(), any(), any());
+    }
+
+    @Test
+    void asyncTransferTest() throws Exception {
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setAmount(new BigDecimal("100"));
+        transactionDTO.setOriginAccountId(1L);
+        transactionDTO.setDestinationAccountId(2L);
+        transactionDTO.setBankId(1L);
+        when(transferQueue.submit(any())).thenReturn(new QueuedTransfer("abc", transactionDTO, "PENDING", null));
+        when(transferQueue.find("abc")).thenReturn(Optional.of(
+                new QueuedTransfer("abc", transactionDTO, "OK", "Transfer done successfully")));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer")
+                .param("async", "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transactionDTO)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/accounts/transfers/abc"))
+                .andExpect(jsonPath("$.id").value("abc"))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/transfers/abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("OK"))
+                .andExpect(jsonPath("$.transaction.amount").value(100));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/transfers/missing"))
+                .andExpect(status().isNotFound());
+
+        verify(accountService, never()).transfer(any(), any(), any(), any());
+    }
+
+    @Test
+    void asyncTransferQueueFullTest() throws Exception {
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setAmount(new BigDecimal("100"));
+        transactionDTO.setOriginAccountId(1L);
+        transactionDTO.setDestinationAccountId(2L);
+        transactionDTO.setBankId(1L);
+        when(transferQueue.submit(any())).thenThrow(new TransferQueueFull("Transfer queue is full"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer")
+                .param("async", "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transactionDTO)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.status").value("ERROR"))
+                .andExpect(jsonPath("$.message").value("Transfer queue is full"));
+    }
+
+    @Test
+    void transferRateLimitedTest() throws Exception {
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setAmount(new BigDecimal("100"));
+        transactionDTO.setOriginAccountId(1L);
+        transactionDTO.setDestinationAccountId(2L);
+        transactionDTO.setBankId(1L);
+        doThrow(new TransferRateLimited("Too many transfers for account 1", 3))
+                .doThrow(new TransferOverloaded("Transfer service is overloaded"))
+                .when(accountService).transfer(1L, 2L, new BigDecimal("100"), 1L);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transactionDTO)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.message").value("Too many transfers for account 1"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(transactionDTO)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.status").value("ERROR"));
+    }
+
+    @Test
+    void importTest() throws Exception {
+        when(accountImportService.importAccounts(any(), any())).thenReturn(new ImportResult(2, 0, null, 5, 400));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/import")
+                .contentType("text/csv")
+                .content("name,balance\nKaren,3000\nJohn,10\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(2))
+                .andExpect(jsonPath("$.rowsPerSecond").value(400));
+
+        verify(accountImportService).importAccounts(any(), eq(AccountImportService.Format.CSV));
+    }
+
+    @Test
+    void searchTest() throws Exception {
+        when(accountService.searchByName("K", 100)).thenReturn(Arrays.asList(Data.createAccount001().orElseThrow()));
+        when(accountService.findByName("Nobody")).thenReturn(Optional.empty());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/search").param("prefix", "K"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value("Kevin"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/search").param("name", "Nobody"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(0)));
+
+        verify(accountService).searchByName("K", 100);
+        verify(accountService).findByName("Nobody");
+    }
+
+    @Test
+    void topTest() throws Exception {
+        when(accountService.topBalances(2)).thenReturn(Arrays.asList(
+                new AccountBalance(2L, "Brando", new BigDecimal("2000.00")),
+                new AccountBalance(1L, "Kevin", new BigDecimal("1000.00"))));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/top").param("n", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", Matchers.hasSize(2)))
+                .andExpect(jsonPath("$[0].name").value("Brando"))
+                .andExpect(jsonPath("$[1].balance").value(1000.00));
+
+        verify(accountService).topBalances(2);
+        verify(accountService, never()).findAll();
+    }
+
+    @Test
+    void balanceAtTest() throws Exception {
+        Instant at = Instant.parse("2024-01-01T00:00:00Z");
+        when(accountService.balanceAt(1L, at)).thenReturn(Optional.of(new BigDecimal("900.00")));
+        when(accountService.balanceAt(2L, at)).thenReturn(Optional.empty());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/1/balance").param("at", "2024-01-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1))
+                .andExpect(jsonPath("$.at").value("2024-01-01T00:00:00Z"))
+                .andExpect(jsonPath("$.balance").value(900.00));
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/2/balance").param("at", "2024-01-01T00:00:00Z"))
+                .andExpect(status().isNotFound());
+
+        verify(accountService, never()).findById(any());
+    }
+
+    @Test
+    void scheduleTransferTest() throws Exception {
+        Instant dueAt = Instant.parse("2030-01-31T09:00:00Z");
+        ScheduledTransfer scheduled = new ScheduledTransfer(7L, 1L, 2L, 1L, new BigDecimal("100"), dueAt,
+                ScheduledTransfer.State.PENDING, null, null, null, null);
+        when(scheduledTransfers.schedule(any(), eq(dueAt))).thenReturn(scheduled);
+        when(scheduledTransfers.cancel(7L)).thenReturn(false);
+        when(scheduledTransfers.find(7L)).thenReturn(Optional.of(new ScheduledTransfer(7L, 1L, 2L, 1L, new BigDecimal("100"),
+                dueAt, ScheduledTransfer.State.DONE, dueAt.plusMillis(3), "Transfer done successfully", null, null)));
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("originAccountId", 1L);
+        request.put("destinationAccountId", 2L);
+        request.put("amount", new BigDecimal("100"));
+        request.put("bankId", 1L);
+        request.put("dueAt", "2030-01-31T09:00:00Z");
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/accounts/transfers/scheduled")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/accounts/transfers/scheduled/7"))
+                .andExpect(jsonPath("$.state").value("PENDING"))
+                .andExpect(jsonPath("$.dueAt").value("2030-01-31T09:00:00Z"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/transfers/scheduled/7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("DONE"));
+        mockMvc.perform(MockMvcRequestBuilders.delete("/api/accounts/transfers/scheduled/7"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/api/accounts/transfers/scheduled/8"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void detailETagTest() throws Exception {
+        Account account = Data.createAccount001().orElseThrow();
+        account.setVersion(7);
+        when(accountService.findById(1L)).thenReturn(account);
+        when(accountService.findVersion(1L)).thenReturn(Optional.of(7L));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts/1").header("If-None-Match", "\"7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(content().string(""));
+
+        verify(accountService).findById(1L);
+        verify(accountService).findVersion(1L);
+    }
+
+    @Test
+    void listETagTest() throws Exception {
+        when(accountService.accountsVersion()).thenReturn("abc-1");
+        when(accountService.findAll()).thenReturn(Arrays.asList(Data.createAccount001().orElseThrow()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc-1\""))
+                .andExpect(jsonPath("$", Matchers.hasSize(1)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts").header("If-None-Match", "\"abc-1\""))
+                .andExpect(status().isNotModified());
+
+        when(accountService.accountsVersion()).thenReturn("abc-2");
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/accounts").header("If-None-Match", "\"abc-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc-2\""));
+
+        verify(accountService, times(2)).findAll();
+    }
+}
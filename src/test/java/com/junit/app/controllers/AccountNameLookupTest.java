@@ -0,0 +1,41 @@
+package com.junit.app.controllers;
+
+import com.junit.app.models.Account;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A row written behind this instance's back, as another instance or a direct load would, is never
+ * seen by the in-memory name index; an exact name lookup must still find it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@DirtiesContext
+class AccountNameLookupTest {
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void findRowWrittenElsewhereTest() {
+        jdbcTemplate.update("insert into accounts (id, name, balance, version) values (?, ?, ?, 0)",
+                990001L, "Written elsewhere", new BigDecimal("12.50"));
+
+        ResponseEntity<Account[]> response = testRestTemplate.getForEntity(
+                "/api/accounts/search?name={name}", Account[].class, "Written elsewhere");
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, response.getBody().length);
+        assertEquals(990001L, response.getBody()[0].getId());
+        assertEquals(0, new BigDecimal("12.50").compareTo(response.getBody()[0].getBalance()));
+    }
+}
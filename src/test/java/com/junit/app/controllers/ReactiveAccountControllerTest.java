@@ -0,0 +1,211 @@
+package com.junit.app.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.junit.app.Data;
+import com.junit.app.models.Account;
+import com.junit.app.models.AccountBalance;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.services.AccountService;
+import com.junit.app.services.ScheduledTransfers;
+import com.junit.app.services.TransferAdmission;
+import com.junit.app.services.TransferQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(ReactiveAccountController.class)
+@Import(AccountRequests.class)
+class ReactiveAccountControllerTest {
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private ReactiveAccountController reactiveAccountController;
+    @MockBean
+    private AccountService accountService;
+    @MockBean
+    private TransferQueue transferQueue;
+    @MockBean
+    private TransferAdmission transferAdmission;
+    @MockBean
+    private ScheduledTransfers scheduledTransfers;
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper();
+    }
+
+    @Test
+    void detailTest() {
+        when(accountService.findById(1L)).thenReturn(Data.createAccount001().orElseThrow());
+        when(accountService.findById(9L)).thenThrow(new NoSuchElementException());
+
+        webTestClient.get().uri("/api/accounts/1").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Kevin")
+                .jsonPath("$.balance").isEqualTo(1000);
+
+        webTestClient.get().uri("/api/accounts/9").exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void listTest() {
+        when(accountService.findPage(Long.MIN_VALUE, 100)).thenReturn(Arrays.asList(
+                Data.createAccount001().orElseThrow(), Data.createAccount002().orElseThrow()));
+        when(accountService.findPage(2L, 100)).thenReturn(Collections.emptyList());
+
+        webTestClient.get().uri("/api/accounts").accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Account.class).hasSize(2);
+
+        verify(accountService, never()).findAll();
+    }
+
+    @Test
+    void pageTest() {
+        when(accountService.accountsVersion()).thenReturn("7");
+        when(accountService.findPage(1L, 100)).thenReturn(
+                Collections.singletonList(Data.createAccount002().orElseThrow()));
+
+        // afterId alone answers one page, as the servlet list does, rather than streaming every later account.
+        webTestClient.get().uri("/api/accounts?afterId=1").accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"7\"")
+                .expectBodyList(Account.class).hasSize(1);
+
+        verify(accountService, never()).findPage(2L, 100);
+    }
+
+    @Test
+    void streamTest() throws Exception {
+        when(accountService.findPage(Long.MIN_VALUE, 100)).thenReturn(
+                Collections.singletonList(Data.createAccount001().orElseThrow()));
+        when(accountService.findPage(1L, 100)).thenReturn(
+                Collections.singletonList(Data.createAccount002().orElseThrow()));
+        when(accountService.findPage(2L, 100)).thenReturn(Collections.emptyList());
+
+        String body = webTestClient.get().uri("/api/accounts").accept(MediaType.APPLICATION_NDJSON).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        assertEquals(objectMapper.writeValueAsString(Data.createAccount001().orElseThrow()) + "\n" +
+                objectMapper.writeValueAsString(Data.createAccount002().orElseThrow()) + "\n", body);
+    }
+
+    @Test
+    void balancesTest() {
+        Instant at = Instant.parse("2026-01-01T00:00:00Z");
+        AtomicInteger pulled = new AtomicInteger();
+        when(accountService.balancePagesAt(at)).then(invocation -> Stream.of(
+                        List.of(new AccountBalance(1L, "Kevin", new BigDecimal("1000.00")),
+                                new AccountBalance(2L, "Brando", new BigDecimal("2000.00"))),
+                        List.of(new AccountBalance(3L, "Karen", new BigDecimal("3000.00"))))
+                .peek(page -> pulled.incrementAndGet())
+                .iterator());
+
+        webTestClient.get().uri("/api/accounts/balances?at=" + at).accept(MediaType.APPLICATION_NDJSON).exchange()
+                .expectStatus().isOk()
+                .expectBodyList(AccountBalance.class).hasSize(3);
+        assertEquals(2, pulled.get());
+
+        // A subscriber that wants one balance only causes the first range to be read.
+        pulled.set(0);
+        assertEquals(1, reactiveAccountController.balancesAt(at).take(1).collectList().block().size());
+        assertEquals(1, pulled.get());
+    }
+
+    @Test
+    void transferTest() {
+        TransactionDTO transactionDTO = new TransactionDTO();
+        transactionDTO.setOriginAccountId(1L);
+        transactionDTO.setDestinationAccountId(2L);
+        transactionDTO.setBankId(1L);
+        transactionDTO.setAmount(new BigDecimal("100"));
+
+        webTestClient.post().uri("/api/accounts/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(transactionDTO)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo("OK")
+                .jsonPath("$.message").isEqualTo("Transfer done successfully");
+
+        verify(accountService).transfer(1L, 2L, new BigDecimal("100"), 1L);
+
+        transactionDTO.setAmount(new BigDecimal("-5"));
+        webTestClient.post().uri("/api/accounts/transfer")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(transactionDTO)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("Amount must be positive");
+    }
+
+    @Test
+    void saveTest() {
+        when(accountService.save(any())).then(invocation -> {
+            Account account = invocation.getArgument(0);
+            account.setId(3L);
+            return account;
+        });
+
+        webTestClient.post().uri("/api/accounts")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new Account(null, "Karen", new BigDecimal("3000")))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo(3)
+                .jsonPath("$.name").isEqualTo("Karen");
+    }
+
+    @Test
+    void eTagTest() {
+        Account account = Data.createAccount001().orElseThrow();
+        account.setVersion(3);
+        when(accountService.findById(1L)).thenReturn(account);
+        when(accountService.findVersion(1L)).thenReturn(Optional.of(3L));
+        when(accountService.accountsVersion()).thenReturn("abc-1");
+
+        webTestClient.get().uri("/api/accounts/1").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"3\"");
+        webTestClient.get().uri("/api/accounts/1").header("If-None-Match", "\"3\"").exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        webTestClient.get().uri("/api/accounts").accept(MediaType.APPLICATION_JSON)
+                .header("If-None-Match", "\"abc-1\"").exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        verify(accountService).findById(1L);
+        verify(accountService, never()).findPage(any(), anyInt());
+    }
+}
@@ -0,0 +1,194 @@
+package com.junit.app.controllers;
+
+import com.junit.app.models.Account;
+import com.junit.app.models.TransactionDTO;
+import com.junit.app.services.AccountService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Load harness for the transfer path. Tune it with -Dload.threads, -Dload.seconds, -Dload.accounts
+ * and -Dload.readRatio; run it alone with -Dgroups=load.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"logging.level.org.hibernate.SQL=OFF", "app.transfers.rate-limit.enabled=false",
+                "server.error.include-message=always"})
+@DirtiesContext
+@Slf4j
+public class TransferLoadTest {
+    private static final String NOT_ENOUGH_MONEY = "Not enough money for the account";
+
+    private static final int THREADS = Integer.getInteger("load.threads", 4);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 3);
+    private static final int ACCOUNTS = Integer.getInteger("load.accounts", 20);
+    private static final double READ_RATIO = Double.parseDouble(System.getProperty("load.readRatio", "0.5"));
+
+    @Autowired
+    private TestRestTemplate testRestTemplate;
+    @Autowired
+    private AccountService accountService;
+    @LocalServerPort
+    private int port;
+
+    private String createUri(String uri) {
+        return "http://localhost:".concat(String.valueOf(port)).concat(uri);
+    }
+
+    @Test
+    void transferLoadTest() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Account account = testRestTemplate.postForEntity(createUri("/api/accounts"),
+                    new Account(null, "Load" + i, new BigDecimal("1000")), Account.class).getBody();
+            ids.add(account.getId());
+        }
+        BigDecimal initialTotal = totalBalance();
+        int initialTransfers = accountService.reviewTotalTransfers(1L);
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Worker>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                Worker worker = new Worker();
+                start.await();
+                worker.run(ids, System.nanoTime() + TimeUnit.SECONDS.toNanos(SECONDS));
+                return worker;
+            }));
+        }
+
+        long began = System.nanoTime();
+        start.countDown();
+        List<Worker> workers = new ArrayList<>();
+        for (Future<Worker> future : futures) {
+            workers.add(future.get());
+        }
+        double seconds = (System.nanoTime() - began) / 1e9;
+        executor.shutdown();
+
+        Report transfers = Report.of(workers, true);
+        Report reads = Report.of(workers, false);
+        int rejected = workers.stream().mapToInt(worker -> worker.rejected).sum();
+        int errors = workers.stream().mapToInt(worker -> worker.errors).sum();
+        log.info("Load: {} threads for {}s", THREADS, String.format("%.1f", seconds));
+        log.info("{}, {} rejected", transfers.format("POST /api/accounts/transfer", seconds), rejected);
+        log.info("{}", reads.format("GET /api/accounts/{id}", seconds));
+
+        assertEquals(0, errors);
+        assertTrue(transfers.count > 0);
+        assertEquals(0, initialTotal.compareTo(totalBalance()), "Money was created or destroyed");
+        assertEquals(initialTransfers + transfers.count, accountService.reviewTotalTransfers(1L));
+    }
+
+    private BigDecimal totalBalance() {
+        Account[] accounts = testRestTemplate.getForEntity(createUri("/api/accounts"), Account[].class).getBody();
+        return Arrays.stream(accounts).map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private class Worker {
+        private long[] transferLatencies = new long[1024];
+        private int transfers;
+        private long[] readLatencies = new long[1024];
+        private int reads;
+        private int rejected;
+        private int errors;
+
+        private void run(List<Long> ids, long deadline) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                Long id = ids.get(random.nextInt(ids.size()));
+                if (random.nextDouble() < READ_RATIO) {
+                    long began = System.nanoTime();
+                    ResponseEntity<Account> response = testRestTemplate.getForEntity(
+                            createUri("/api/accounts/" + id), Account.class);
+                    record(false, System.nanoTime() - began, response.getStatusCode(), null);
+                } else {
+                    TransactionDTO transactionDTO = new TransactionDTO();
+                    transactionDTO.setOriginAccountId(id);
+                    transactionDTO.setDestinationAccountId(ids.get(random.nextInt(ids.size())));
+                    transactionDTO.setAmount(BigDecimal.valueOf(random.nextInt(1, 100)));
+                    transactionDTO.setBankId(1L);
+                    long began = System.nanoTime();
+                    ResponseEntity<String> response = testRestTemplate.postForEntity(
+                            createUri("/api/accounts/transfer"), transactionDTO, String.class);
+                    record(true, System.nanoTime() - began, response.getStatusCode(), response.getBody());
+                }
+            }
+        }
+
+        private void record(boolean transfer, long nanos, HttpStatus status, String body) {
+            if (transfer && status == HttpStatus.INTERNAL_SERVER_ERROR && body != null && body.contains(NOT_ENOUGH_MONEY)) {
+                // NotEnoughMoney is not mapped to a 4xx, so an overdrawn origin surfaces as a 500; any other 500 is an error.
+                rejected++;
+            } else if (status != HttpStatus.OK) {
+                errors++;
+            } else if (transfer) {
+                if (transfers == transferLatencies.length) {
+                    transferLatencies = Arrays.copyOf(transferLatencies, transfers * 2);
+                }
+                transferLatencies[transfers++] = nanos;
+            } else {
+                if (reads == readLatencies.length) {
+                    readLatencies = Arrays.copyOf(readLatencies, reads * 2);
+                }
+                readLatencies[reads++] = nanos;
+            }
+        }
+    }
+
+    private static class Report {
+        private final long[] latencies;
+        private final int count;
+
+        private Report(long[] latencies) {
+            this.latencies = latencies;
+            this.count = latencies.length;
+        }
+
+        private static Report of(List<Worker> workers, boolean transfers) {
+            long[] all = workers.stream()
+                    .flatMapToLong(worker -> transfers
+                            ? Arrays.stream(worker.transferLatencies, 0, worker.transfers)
+                            : Arrays.stream(worker.readLatencies, 0, worker.reads))
+                    .sorted()
+                    .toArray();
+            return new Report(all);
+        }
+
+        private double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * count) - 1;
+            return latencies[Math.max(0, Math.min(index, count - 1))] / 1e6;
+        }
+
+        private String format(String name, double seconds) {
+            return String.format("%s: %d ok, %.0f/s, p50=%.2fms p99=%.2fms p999=%.2fms", name, count,
+                    count / seconds, percentileMillis(0.50), percentileMillis(0.99), percentileMillis(0.999));
+        }
+    }
+}